@@ -0,0 +1,252 @@
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+import android.os.Debug;
+
+import androidx.annotation.NonNull;
+
+import com.example.myocrapp.core.CaptureStore;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class responsibility:
+ * OCR of already stored images (IMG_*.jpg in a directory, or a given list of files)
+ * Sampled decoding, recognition on a bounded worker pool with backpressure
+ * (at most one decoded bitmap per worker in memory)
+ * Results streamed as JSON lines (status ok or failed), a checkpoint file lets an interrupted run resume
+ * Reporting throughput (images/min) and peak memory
+ */
+public class BatchOcrRunner {
+
+    //called on worker threads
+    public interface Listener {
+        void onProgress(int done, int total, String status);
+
+        void onFinished(String status);
+    }
+
+    private static final int MAX_DECODE_PIXELS = 3_000_000; //same budget as capture OCR
+
+    private final TextRecognizer recognizer;
+    private final List<File> inputs;
+    private final File output;
+    private final File checkpoint;
+    private final int workers;
+    private final Listener listener;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile long peakMemoryBytes;
+    private volatile long startNanos; //written by the coordinator, read by summary() on the workers
+    private volatile int total;
+    private Thread coordinator;
+
+    public BatchOcrRunner(@NonNull TextRecognizer recognizer, @NonNull List<File> inputs,
+                          @NonNull File output, @NonNull File checkpoint, int workers, @NonNull Listener listener) {
+        this.recognizer = recognizer;
+        this.inputs = inputs;
+        this.output = output;
+        this.checkpoint = checkpoint;
+        this.workers = Math.max(1, workers);
+        this.listener = listener;
+    }
+
+    //all captures in dir, oldest first (file names carry the timestamp)
+    public static List<File> listCaptures(File dir) {
+        File[] files = dir.listFiles((d, name) -> CaptureStore.isCapture(name));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    public static int defaultWorkers() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public synchronized void start() {
+        if (coordinator != null) {
+            return;
+        }
+        coordinator = new Thread(this::run, "batch-ocr");
+        coordinator.start();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    //after cancel(): waits until the images in flight are done, true if the run has ended
+    public boolean awaitStopped(long timeoutMs) {
+        Thread t = coordinator;
+        if (t == null) {
+            return true;
+        }
+        try {
+            t.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !t.isAlive();
+    }
+
+    public boolean isRunning() {
+        Thread t = coordinator;
+        return t != null && t.isAlive();
+    }
+
+    private void run() {
+        Set<String> finished = readCheckpoint();
+        List<File> pending = new ArrayList<>();
+        for (File file : inputs) {
+            if (!finished.contains(file.getName())) {
+                pending.add(file);
+            }
+        }
+        total = pending.size();
+        startNanos = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Semaphore slots = new Semaphore(workers); //backpressure: no queue of decoded images
+
+        try (Writer results = new BufferedWriter(new FileWriter(output, true));
+             Writer checkpointOut = new BufferedWriter(new FileWriter(checkpoint, true))) {
+
+            for (File file : pending) {
+                if (cancelled) {
+                    break;
+                }
+                slots.acquire();
+                pool.execute(() -> {
+                    try {
+                        process(file, results, checkpointOut);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            pool.shutdownNow();
+        }
+        listener.onFinished((cancelled ? "stopped: " : "finished: ") + summary());
+    }
+
+    private void process(File file, Writer results, Writer checkpointOut) {
+        if (cancelled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Bitmap bitmap = CaptureDecoder.decodeFile(file, MAX_DECODE_PIXELS);
+        if (bitmap == null) {
+            //broken or not an image: decoding again won't help, checkpointed so the next run skips it
+            failed.incrementAndGet();
+            try {
+                record(new JSONObject()
+                        .put("file", file.getName())
+                        .put("modified", file.lastModified())
+                        .put("status", "failed")
+                        .put("error", "can't decode"), file, results, checkpointOut);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            listener.onProgress(done.get(), total, summary());
+            return;
+        }
+        try {
+            if (cancelled) {
+                return; //decoding took a while, the recognizer may be about to close
+            }
+            Text text = Tasks.await(recognizer.process(InputImage.fromBitmap(bitmap, 0)));
+            samplePeakMemory();
+
+            JSONObject line = new JSONObject()
+                    .put("file", file.getName())
+                    .put("modified", file.lastModified())
+                    .put("status", "ok")
+                    .put("ms", (System.nanoTime() - start) / 1_000_000L)
+                    .put("text", text.getText());
+            record(line, file, results, checkpointOut);
+            listener.onProgress(done.incrementAndGet(), total, summary());
+        } catch (Exception e) {
+            //ExecutionException, InterruptedException, JSONException, IOException: skip the image, it is retried next run
+            e.printStackTrace();
+            failed.incrementAndGet();
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    //result first, then checkpoint: a crash in between repeats one image instead of losing it
+    private synchronized void record(JSONObject line, File file, Writer results, Writer checkpointOut) throws IOException {
+        results.write(line.toString());
+        results.write('\n');
+        results.flush();
+        checkpointOut.write(file.getName());
+        checkpointOut.write('\n');
+        checkpointOut.flush();
+    }
+
+    private Set<String> readCheckpoint() {
+        Set<String> names = new HashSet<>();
+        if (!checkpoint.exists()) {
+            return names;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(checkpoint))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return names;
+    }
+
+    //java heap + native heap (bitmap pixels live there since API 26)
+    private void samplePeakMemory() {
+        Runtime rt = Runtime.getRuntime();
+        long used = rt.totalMemory() - rt.freeMemory() + Debug.getNativeHeapAllocatedSize();
+        if (used > peakMemoryBytes) {
+            peakMemoryBytes = used;
+        }
+    }
+
+    public String summary() {
+        float minutes = (System.nanoTime() - startNanos) / 60_000_000_000f;
+        int count = done.get();
+        return String.format(Locale.US, "%d/%d images (%d failed) | %.1f images/min | peak %d MB | %d workers",
+                count, total, failed.get(), minutes > 0f ? count / minutes : 0f,
+                peakMemoryBytes / (1024 * 1024), workers);
+    }
+}
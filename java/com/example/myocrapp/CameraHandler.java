@@ -1,87 +1,285 @@
-package com.example.myocrapp;
-
-import android.graphics.Bitmap;
-import android.widget.ImageView;
-
-import androidx.annotation.NonNull;
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.camera.core.CameraSelector;
-import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageCapture;
-import androidx.camera.core.Preview;
-import androidx.camera.lifecycle.ProcessCameraProvider;
-import androidx.camera.view.PreviewView;
-import androidx.core.content.ContextCompat;
-
-import com.google.common.util.concurrent.ListenableFuture;
-
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-public class CameraHandler {
-
-    private final AppCompatActivity activity;
-    private final PreviewView previewView;
-    private final DetectionHandler detectionHandler; //Receives live camera frames
-    private final ExecutorService cameraExecutor;
-
-    private ImageCapture imageCapture;
-
-    public CameraHandler(@NonNull AppCompatActivity activity,
-                         @NonNull PreviewView previewView,
-                         @NonNull DetectionHandler detectionHandler) {
-        this.activity = activity;
-        this.previewView = previewView;
-        this.detectionHandler = detectionHandler;
-        this.cameraExecutor = Executors.newSingleThreadExecutor(); //Create camera background thread
-
-        startCamera();
-    }
-
-    private void startCamera() {
-        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(activity);
-        future.addListener(() -> {
-            try {
-                ProcessCameraProvider provider = future.get();
-
-                // Preview
-                Preview preview = new Preview.Builder().build();
-                preview.setSurfaceProvider(previewView.getSurfaceProvider());
-
-                // ImageAnalysis for live detection
-                ImageAnalysis analysis = new ImageAnalysis.Builder()
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
-                analysis.setAnalyzer(cameraExecutor, detectionHandler::analyzeFrame);
-
-                // ImageCapture for photo
-                imageCapture = new ImageCapture.Builder()
-                        .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
-                        .build();
-
-                CameraSelector selector = CameraSelector.DEFAULT_BACK_CAMERA;
-
-                provider.unbindAll();
-                provider.bindToLifecycle(activity, selector, preview, analysis, imageCapture);
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }, ContextCompat.getMainExecutor(activity));
-    }
-
-
-    //Trigger photo capture
-    //Save bitmap
-    public ImageCapture getImageCapture() {
-        return imageCapture;
-    }
-
-
-    //for onDestroy
-    public void shutdown() {
-        if (cameraExecutor != null) {
-            cameraExecutor.shutdown();
-        }
-    }
-}
+package com.example.myocrapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageCapture;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+
+import com.example.myocrapp.core.FramePipeline;
+import com.example.myocrapp.core.FrameRecorder;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.example.myocrapp.core.PipelineScheduler;
+import com.example.myocrapp.core.PipelineStage;
+import com.example.myocrapp.core.QualityGovernor;
+import com.example.myocrapp.core.YuvFrame;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.File;
+import java.io.IOException;
+
+public class CameraHandler {
+
+    private final AppCompatActivity activity;
+    private final PreviewView previewView;
+    private final DetectionHandler detectionHandler; //Receives live camera frames
+    private final PipelineScheduler pipeline; //pauses live detection while a capture is processed
+    private final PipelineStage analysisStage; //camera background thread, owned by the scheduler
+
+    private static final long GOVERNOR_INTERVAL_MS = 1000;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private final QualityGovernor governor = new QualityGovernor(DetectionHandler.MODEL_INPUT_SIZE);
+    private long lastGovernorMs; //camera thread
+
+    private ProcessCameraProvider provider;
+    private CameraSelector selector;
+    private ImageAnalysis analysis;
+    private ImageCapture imageCapture;
+    private volatile LiveTextRecognizer liveTextRecognizer; //optional continuous OCR on the same frames
+    private FrameRecorder recorder; //camera thread only, records analysis frames for desktop replay
+    private int framesToRecord;
+    private Runnable onRecordingDone;
+
+    public CameraHandler(@NonNull AppCompatActivity activity,
+                         @NonNull PreviewView previewView,
+                         @NonNull DetectionHandler detectionHandler,
+                         @NonNull PipelineScheduler pipeline,
+                         @NonNull PipelineStage analysisStage) {
+        this.activity = activity;
+        this.previewView = previewView;
+        this.detectionHandler = detectionHandler;
+        this.pipeline = pipeline;
+        this.analysisStage = analysisStage;
+
+        startCamera();
+    }
+
+    private void startCamera() {
+        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(activity);
+        future.addListener(() -> {
+            try {
+                provider = future.get();
+
+                // Preview
+                Preview preview = new Preview.Builder().build();
+                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+                // ImageAnalysis for live detection, resolution and format from the governor
+                analysis = buildAnalysis();
+
+                // ImageCapture for photo
+                imageCapture = new ImageCapture.Builder()
+                        .setCaptureMode(ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                        .build();
+
+                selector = CameraSelector.DEFAULT_BACK_CAMERA;
+
+                provider.unbindAll();
+                provider.bindToLifecycle(activity, selector, preview, analysis, imageCapture);
+
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, ContextCompat.getMainExecutor(activity));
+    }
+
+
+    //analysis close to the tier's size instead of the camera default, the detector only needs 300x300
+    private ImageAnalysis buildAnalysis() {
+        QualityGovernor.Tier tier = governor.getTier();
+        ResolutionSelector resolution = new ResolutionSelector.Builder()
+                .setResolutionStrategy(new ResolutionStrategy(new Size(tier.width, tier.height),
+                        ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                .build();
+        ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                .setResolutionSelector(resolution)
+                .setOutputImageFormat(governor.isRgba()
+                        ? ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888
+                        : ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+        imageAnalysis.setAnalyzer(analysisStage, this::onAnalysisFrame);
+        return imageAnalysis;
+    }
+
+    //main thread, after the governor changed tier or format. Preview and capture stay bound
+    private void rebindAnalysis() {
+        if (provider == null || analysis == null) {
+            return;
+        }
+        provider.unbind(analysis);
+        analysis = buildAnalysis();
+        try {
+            provider.bindToLifecycle(activity, selector, analysis);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //camera thread, about once per second: measured cost and device state -> tier
+    private void updateQuality(long timestampMs) {
+        if (timestampMs - lastGovernorMs < GOVERNOR_INTERVAL_MS) {
+            return;
+        }
+        lastGovernorMs = timestampMs;
+
+        float conversionMs = detectionHandler.getAverageConversionMs();
+        float inferenceMs = detectionHandler.getScheduler().getAverageLatencyMs();
+        if (governor.evaluate(conversionMs, inferenceMs, thermalStatus(), isBatteryLow(), timestampMs)) {
+            detectionHandler.getScheduler().setRateLimits(FramePipeline.MIN_RATE_HZ, governor.getTier().maxRateHz);
+            activity.runOnUiThread(this::rebindAnalysis);
+        }
+        detectionHandler.setQualityStatus(governor.summary());
+    }
+
+    private int thermalStatus() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return QualityGovernor.THERMAL_NONE;
+        }
+        PowerManager power = (PowerManager) activity.getSystemService(Context.POWER_SERVICE);
+        return power.getCurrentThermalStatus();
+    }
+
+    private boolean isBatteryLow() {
+        PowerManager power = (PowerManager) activity.getSystemService(Context.POWER_SERVICE);
+        BatteryManager battery = (BatteryManager) activity.getSystemService(Context.BATTERY_SERVICE);
+        return power.isPowerSaveMode()
+                || battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) <= LOW_BATTERY_PERCENT;
+    }
+
+    //scheduler in front of the detector: static scenes are inferred rarely, motion ramps the rate up
+    private void onAnalysisFrame(@NonNull ImageProxy image) {
+        //gaps in the sensor timestamps = frames dropped by STRATEGY_KEEP_ONLY_LATEST
+        PipelineMetrics.get().onFrameArrived(image.getImageInfo().getTimestamp());
+
+        //preview already runs, analysis starts once the detector is loaded
+        if (!detectionHandler.isReady()) {
+            image.close();
+            return;
+        }
+
+        if (recorder != null) {
+            recordFrame(image);
+        }
+
+        //capture work has priority: no live detection or live OCR until its text is shown,
+        //the tracker keeps the overlay moving
+        if (pipeline.isLivePaused()) {
+            detectionHandler.skipFrame(image);
+            return;
+        }
+
+        //live OCR copies what it needs (throttled) before detection closes the frame
+        LiveTextRecognizer liveText = liveTextRecognizer;
+        if (liveText != null && liveText.isEnabled()) {
+            liveText.offer(image, detectionHandler.getDocumentRegion());
+        }
+
+        updateQuality(image.getImageInfo().getTimestamp() / 1_000_000L);
+
+        //the frame pipeline's scheduler decides whether this frame is inferred or only tracked.
+        //Its change signal reads the Y plane, for RGBA the red channel (pixel stride 4), close enough
+        detectionHandler.analyzeFrame(image);
+    }
+
+
+    //same planes and strides the analyzer sees, no copy
+    static YuvFrame toYuvFrame(@NonNull ImageProxy image) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        return new YuvFrame(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight(),
+                image.getImageInfo().getRotationDegrees(), image.getImageInfo().getTimestamp());
+    }
+
+    //writes the next frames to file (replayed by core.PipelineBenchmark), onDone runs on the main thread
+    public void startRecording(File file, int frames, Runnable onDone) {
+        analysisStage.execute(() -> {
+            if (recorder != null) {
+                return; //already recording
+            }
+            try {
+                recorder = new FrameRecorder(file);
+                framesToRecord = frames;
+                onRecordingDone = onDone;
+                //FrameRecorder stores YUV planes
+                if (governor.isRgba()) {
+                    governor.setRgba(false);
+                    activity.runOnUiThread(this::rebindAnalysis);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    //camera thread
+    private void recordFrame(ImageProxy image) {
+        if (image.getPlanes().length != 3) {
+            return; //RGBA frame from before the rebind
+        }
+        try {
+            recorder.write(toYuvFrame(image));
+            if (recorder.getFrames() < framesToRecord) {
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        recorder = null;
+        activity.runOnUiThread(onRecordingDone);
+    }
+
+
+    public void setLiveTextRecognizer(LiveTextRecognizer liveTextRecognizer) {
+        this.liveTextRecognizer = liveTextRecognizer;
+    }
+
+
+    //Trigger photo capture
+    //Save bitmap
+    public ImageCapture getImageCapture() {
+        return imageCapture;
+    }
+
+
+    //for onDestroy, main thread: no more frames. The analysis stage itself is shut down by the scheduler
+    public void shutdown() {
+        if (analysis != null) {
+            analysis.clearAnalyzer();
+        }
+        //runs after the frame currently being analysed
+        analysisStage.execute(() -> {
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                recorder = null;
+            }
+        });
+    }
+}
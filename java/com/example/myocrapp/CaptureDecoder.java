@@ -0,0 +1,212 @@
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.media.ExifInterface;
+
+import com.example.myocrapp.core.PerceptualHash;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Decoding captured JPEGs for OCR.
+ * Decodes at a power-of-two sample size so the bitmap stays within a pixel budget
+ * instead of allocating the full 12 MP first, then applies the capture rotation.
+ * Stored captures can be decoded by region (only the document) and re-encoded smaller for the archive.
+ */
+public class CaptureDecoder {
+
+    //thumbnail the perceptual hash is computed on, dHash averages it down to 9x8 cells
+    private static final int HASH_WIDTH = 288;
+    private static final int HASH_HEIGHT = 256;
+
+    private CaptureDecoder() {
+    }
+
+    //null if the data can't be decoded
+    public static Bitmap decodeJpeg(byte[] jpeg, int rotationDegrees, int maxPixels) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, maxPixels);
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+        return rotate(bitmap, rotationDegrees);
+    }
+
+    //stored capture, sampled decode + EXIF orientation. null if the file can't be decoded
+    public static Bitmap decodeFile(File file, int maxPixels) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, maxPixels);
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        return rotate(bitmap, exifRotation(file));
+    }
+
+    //only region (0..1 of the upright image) of a stored capture, sampled to maxPixels. null if it can't be decoded
+    public static Bitmap decodeRegion(File file, RectF region, int maxPixels) {
+        BitmapRegionDecoder decoder = null;
+        try {
+            decoder = BitmapRegionDecoder.newInstance(file.getPath(), false);
+            int rotation = exifRotation(file);
+            Rect rect = storedRect(region, rotation, decoder.getWidth(), decoder.getHeight());
+            if (rect == null) {
+                return null; //region outside the image, the caller decodes the full capture
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSizeFor(rect.width(), rect.height(), maxPixels);
+            return rotate(decoder.decodeRegion(rect, options), rotation);
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace(); //IllegalArgumentException: rect rejected by the decoder
+            return null;
+        } finally {
+            if (decoder != null) {
+                decoder.recycle();
+            }
+        }
+    }
+
+    //upright relative region -> pixel rectangle of the file as stored (before the EXIF rotation),
+    //clipped to the image. null if nothing of it is inside
+    static Rect storedRect(RectF upright, int rotation, int storedWidth, int storedHeight) {
+        float left;
+        float top;
+        float right;
+        float bottom;
+        switch (rotation) {
+            case 90:
+                left = upright.top; right = upright.bottom;
+                top = 1f - upright.right; bottom = 1f - upright.left;
+                break;
+            case 180:
+                left = 1f - upright.right; right = 1f - upright.left;
+                top = 1f - upright.bottom; bottom = 1f - upright.top;
+                break;
+            case 270:
+                left = 1f - upright.bottom; right = 1f - upright.top;
+                top = upright.left; bottom = upright.right;
+                break;
+            default:
+                left = upright.left; right = upright.right;
+                top = upright.top; bottom = upright.bottom;
+        }
+        Rect rect = new Rect(Math.round(left * storedWidth), Math.round(top * storedHeight),
+                Math.round(right * storedWidth), Math.round(bottom * storedHeight));
+        if (!rect.intersect(0, 0, storedWidth, storedHeight) || rect.isEmpty()) {
+            return null;
+        }
+        return rect;
+    }
+
+    //archive: rewrites a stored capture with its long side at most maxSide, upright (no EXIF rotation needed).
+    //Keeps name and modification time. false if it was small enough already or failed
+    public static boolean reencode(File file, int maxSide, int quality) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), bounds);
+        int longSide = Math.max(bounds.outWidth, bounds.outHeight);
+        if (longSide <= maxSide) {
+            return false;
+        }
+        //largest power of two that still leaves at least maxSide, the rest is done by scaling
+        int sample = 1;
+        while (longSide / (sample * 2) >= maxSide) {
+            sample *= 2;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sample;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null) {
+            return false;
+        }
+        float scale = (float) maxSide / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * scale),
+                Math.round(bitmap.getHeight() * scale), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        Bitmap upright = rotate(scaled, exifRotation(file));
+
+        long modified = file.lastModified();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            upright.compress(Bitmap.CompressFormat.JPEG, quality, out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return false;
+        } finally {
+            upright.recycle();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return false;
+        }
+        file.setLastModified(modified); //recency is the eviction order of CaptureStore
+        return true;
+    }
+
+    //perceptual hash of a capture, two captures of the same page differ in a few bits only
+    public static long perceptualHash(Bitmap bitmap) {
+        //bilinear scaling straight to 9x8 would only sample a few pixels, the thumbnail keeps the averaging honest
+        Bitmap thumb = Bitmap.createScaledBitmap(bitmap, HASH_WIDTH, HASH_HEIGHT, true);
+        int[] pixels = new int[HASH_WIDTH * HASH_HEIGHT];
+        thumb.getPixels(pixels, 0, HASH_WIDTH, 0, 0, HASH_WIDTH, HASH_HEIGHT);
+        if (thumb != bitmap) {
+            thumb.recycle();
+        }
+        return PerceptualHash.dHash(pixels, HASH_WIDTH, HASH_HEIGHT);
+    }
+
+    static int exifRotation(File file) {
+        try {
+            ExifInterface exif = new ExifInterface(file.getPath());
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90: return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180: return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270: return 270;
+                default: return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    //smallest power of two that brings width * height under maxPixels (BitmapFactory rounds down to powers of two)
+    public static int sampleSizeFor(int width, int height, int maxPixels) {
+        int sample = 1;
+        while ((long) (width / sample) * (height / sample) > maxPixels) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    static Bitmap rotate(Bitmap bitmap, int rotationDegrees) {
+        if (bitmap == null || rotationDegrees % 360 == 0) {
+            return bitmap;
+        }
+        Matrix m = new Matrix();
+        m.postRotate(rotationDegrees);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), m, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+}
@@ -1,196 +1,383 @@
-package com.example.myocrapp;
-
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.widget.ImageView;
-import android.widget.TextView;
-
-import androidx.annotation.NonNull;
-import androidx.appcompat.app.AppCompatActivity;
-import androidx.camera.core.ImageProxy;
-
-import com.google.mediapipe.framework.image.BitmapImageBuilder;
-import com.google.mediapipe.framework.image.MPImage;
-import com.google.mediapipe.tasks.core.BaseOptions;
-import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetector;
-import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetectorResult;
-
-import java.io.ByteArrayOutputStream;
-import java.nio.ByteBuffer;
-
-
-/*
-*
-* Receiving camera frames (ImageProxy)
-
-Converting camera frames into Bitmaps
-
- MediaPipe object detection
-
-Drawing bounding boxes
-
-Showing detection results in the UI
-* */
-
-public class DetectionHandler {
-
-    private final AppCompatActivity activity;
-    private final ObjectDetector objectDetector;
-    private final ImageView overlayView;
-    private final TextView debugText;
-
-    //constructor
-    public DetectionHandler(AppCompatActivity activity, ImageView overlayView, TextView debugText) {
-        this.activity = activity;
-        this.overlayView = overlayView;
-        this.debugText = debugText;
-
-        //mediapipe modell in assets folder
-        BaseOptions baseOptions = BaseOptions.builder()
-                .setModelAssetPath("ssd_mobilenet_v2.tflite")
-                .build();
-
-        ObjectDetector.ObjectDetectorOptions options = ObjectDetector.ObjectDetectorOptions.builder()
-                        .setBaseOptions(baseOptions)
-                        .setMaxResults(1)
-                        .setScoreThreshold(0.4f) //set high to avoid flickering boxes ans bad predictions. if too high won't detect anything
-                        .build();
-
-        objectDetector = ObjectDetector.createFromOptions(activity, options);
-
-        //debugText.setText("ObjectDetector initialized");
-    }
-
-
-    //camera frame analysis
-    //real-time detection loop
-    //This method is called repeatedly by CameraX on a background thread
-    //CameraX → ImageProxy → Bitmap → MPImage → ObjectDetector
-    public void analyzeFrame(@NonNull ImageProxy imageProxy) {
-        Bitmap bitmap = imageProxyToBitmap(imageProxy);
-        imageProxy.close();
-        if (bitmap == null){
-            return;
-        }
-        //MPImage = MediaPipe’s internal image wrapper. Mediapipe can't handle bitmap
-        MPImage mpImage = new BitmapImageBuilder(bitmap).build();
-
-        //detection
-        ObjectDetectorResult result = objectDetector.detect(mpImage);
-        Bitmap overlay = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(overlay);
-
-        Paint paint = new Paint();
-        paint.setStyle(Paint.Style.STROKE);
-        paint.setStrokeWidth(6f);
-        paint.setColor(Color.GREEN);
-        String message;
-        if (result.detections().isEmpty()) {
-            message = "❌ No detections";
-        } else {
-            var category = result.detections().get(0).categories().get(0);
-
-            String label = category.categoryName();
-            float score = category.score(); // value between 0 - 1
-
-            message = "✅ Detected: " + label + " (score: " + String.format("%.3f", score) + ")";
-
-            result.detections().forEach(d -> canvas.drawRect(d.boundingBox(), paint));
-        }
-        //ui updates must be on main thread otherwise app crashes
-        activity.runOnUiThread(() -> {
-            overlayView.setImageBitmap(overlay);
-            debugText.setText(message);
-        });
-    }
-
-
-    //Detect object
-    //map the detected bounding box back to the original image size and draw the box on the original image.
-    public void processDocumentAlignment(Bitmap bitmap, ImageView targetView) {
-        if (objectDetector == null){
-            return;
-        }
-        //Resize image to model input size, ssd_mobilenet_v2 was trained on 300x300
-        int modelInputSize = 300;
-        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, modelInputSize, modelInputSize, true);
-
-        MPImage mpImage = new BitmapImageBuilder(scaled).build();
-        ObjectDetectorResult result = objectDetector.detect(mpImage);
-        if (result.detections().isEmpty()) return;
-
-        var best = result.detections().get(0);
-
-        float scaleX = (float) bitmap.getWidth() / modelInputSize;
-        float scaleY = (float) bitmap.getHeight() / modelInputSize;
-
-        android.graphics.RectF box = best.boundingBox();
-        android.graphics.RectF scaledBox =
-                new android.graphics.RectF(
-                        box.left * scaleX,
-                        box.top * scaleY,
-                        box.right * scaleX,
-                        box.bottom * scaleY
-                );
-
-        Bitmap boxed = drawBoundingBox(bitmap, scaledBox);
-
-        activity.runOnUiThread(() -> targetView.setImageBitmap(boxed));
-    }
-
-    //draw rectangle without modifying the original bitmap. impact on orc otherwise
-    private Bitmap drawBoundingBox(Bitmap original, android.graphics.RectF box) {
-        Bitmap mutable = original.copy(Bitmap.Config.ARGB_8888, true);
-        Canvas canvas = new Canvas(mutable);
-
-        Paint paint = new Paint();
-        paint.setStyle(Paint.Style.STROKE); //outline only
-        paint.setStrokeWidth(8f);
-        paint.setColor(Color.GREEN);
-
-        canvas.drawRect(box, paint);
-        return mutable;
-    }
-
-    //convert imageproxy
-    //CameraX outputs ImageProxy (YUV) ,  Android APIs need Bitmap (RGB)
-    private Bitmap imageProxyToBitmap(ImageProxy image) {
-        ImageProxy.PlaneProxy[] planes = image.getPlanes();
-        ByteBuffer y = planes[0].getBuffer();
-        ByteBuffer u = planes[1].getBuffer();
-        ByteBuffer v = planes[2].getBuffer();
-
-        int ySize = y.remaining();
-        int uSize = u.remaining();
-        int vSize = v.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        y.get(nv21, 0, ySize);
-        v.get(nv21, ySize, vSize);
-        u.get(nv21, ySize + vSize, uSize);
-
-        android.graphics.YuvImage yuv =
-                new android.graphics.YuvImage(
-                        nv21,
-                        android.graphics.ImageFormat.NV21,
-                        image.getWidth(),
-                        image.getHeight(),
-                        null
-                );
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuv.compressToJpeg(new android.graphics.Rect(0, 0, image.getWidth(), image.getHeight()), 90, out);
-
-        byte[] jpeg = out.toByteArray();
-        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
-
-        Matrix m = new Matrix();
-        m.postRotate(image.getImageInfo().getRotationDegrees());
-
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), m, true);
-    }
-}
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Debug;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.ImageProxy;
+
+import com.example.myocrapp.core.CropRegion;
+import com.example.myocrapp.core.DetectionBox;
+import com.example.myocrapp.core.DetectionScheduler;
+import com.example.myocrapp.core.FramePipeline;
+import com.example.myocrapp.core.FrameStats;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.example.myocrapp.core.PipelineScheduler;
+import com.example.myocrapp.core.YuvFrame;
+import com.google.mediapipe.framework.image.BitmapImageBuilder;
+import com.google.mediapipe.framework.image.MPImage;
+import com.google.mediapipe.tasks.core.BaseOptions;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
+import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetector;
+import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetectorResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+
+/*
+*
+* Receiving camera frames (ImageProxy)
+
+Converting camera frames into Bitmaps
+
+ MediaPipe object detection
+
+Drawing bounding boxes
+
+Showing detection results in the UI
+* */
+
+public class DetectionHandler {
+
+    //ssd_mobilenet_v2 was trained on 300x300
+    static final int MODEL_INPUT_SIZE = 300;
+    private static final int ARRIVAL_SLOTS = 8; //more than the frames that can be in flight
+
+    private final AppCompatActivity activity;
+    private volatile ObjectDetector objectDetector; //live frames, IMAGE or LIVE_STREAM mode, created by init()
+    private volatile ObjectDetector captureDetector; //captured photos, always IMAGE mode
+    private volatile boolean ready; //detectors created and warmed up
+    private StartupTrace startupTrace;
+    private PipelineScheduler pipeline; //queue depths and wait times for the HUD
+    private final RunningMode runningMode;
+    private final ImageView overlayView;
+    private final DetectionOverlay overlay; //draws live results on top of the preview
+    private final TextView debugText;
+
+    private final FrameStats stats = new FrameStats();
+    //live loop: scheduler -> converter -> MediaPipe -> tracker -> onResult, same code as the desktop benchmark
+    private final MediaPipeDetector liveDetector;
+    private final FramePipeline framePipeline;
+    //arrival time per frame timestamp, for the end-to-end latency once its result is shown
+    private final long[] arrivalTimestampMs = new long[ARRIVAL_SLOTS];
+    private final long[] arrivalNanos = new long[ARRIVAL_SLOTS];
+    private int nextArrival; //camera thread
+    private volatile int lastFrameWidth;
+    private volatile int lastFrameHeight;
+    private volatile List<DetectionBox> latestBoxes = Collections.emptyList();
+    private volatile String extraStatus; //appended to the debug text, e.g. live OCR rate
+    private volatile String qualityStatus; //analysis tier chosen by the QualityGovernor
+    private volatile boolean hudEnabled; //debug text shows the per-stage metrics instead of the detection result
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+    private long lastTimestampMs; //detectAsync needs strictly increasing timestamps
+
+    //constructor
+    public DetectionHandler(AppCompatActivity activity, ImageView overlayView, DetectionOverlay overlay, TextView debugText) {
+        this(activity, overlayView, overlay, debugText, RunningMode.IMAGE, 1);
+    }
+
+    //runningMode IMAGE: blocking detect() on the camera thread
+    //runningMode LIVE_STREAM: detectAsync(), conversion of the next frame overlaps inference of the previous one
+    public DetectionHandler(AppCompatActivity activity, ImageView overlayView, DetectionOverlay overlay, TextView debugText,
+                            RunningMode runningMode, int maxInFlight) {
+        this.activity = activity;
+        this.overlayView = overlayView;
+        this.overlay = overlay;
+        this.debugText = debugText;
+        this.runningMode = runningMode;
+
+        liveDetector = new MediaPipeDetector(runningMode, maxInFlight, stats);
+        framePipeline = new FramePipeline(liveDetector, this::onResult, MODEL_INPUT_SIZE);
+        liveDetector.setPipeline(framePipeline);
+
+        //debugText.setText("ObjectDetector initialized");
+    }
+
+    //loading the model takes hundreds of ms, so it runs on the executor instead of in onCreate.
+    //frames are dropped until isReady(), onReady runs on the executor afterwards
+    public void init(Executor executor, Runnable onReady) {
+        executor.execute(() -> {
+            try {
+                ObjectDetector live = createDetector(runningMode);
+                //IMAGE mode detector can serve the captures as well
+                ObjectDetector capture = runningMode == RunningMode.IMAGE ? live : createDetector(RunningMode.IMAGE);
+                warmUp(live, capture);
+                objectDetector = live;
+                captureDetector = capture;
+                liveDetector.setDetector(live);
+                ready = true;
+                if (startupTrace != null) {
+                    startupTrace.mark(StartupTrace.Milestone.MODELS_READY);
+                }
+                if (onReady != null) {
+                    onReady.run();
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                activity.runOnUiThread(() -> debugText.setText("ObjectDetector could not be loaded"));
+            }
+        });
+    }
+
+    //the first inference allocates the interpreter's tensors, pay that with a blank frame before the camera needs it
+    private void warmUp(ObjectDetector live, ObjectDetector capture) {
+        Bitmap blank = Bitmap.createBitmap(MODEL_INPUT_SIZE, MODEL_INPUT_SIZE, Bitmap.Config.ARGB_8888);
+        MPImage image = new BitmapImageBuilder(blank).build();
+        capture.detect(image);
+        if (live != capture) {
+            liveDetector.warmUp(live, image);
+            lastTimestampMs = 1;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setStartupTrace(StartupTrace startupTrace) {
+        this.startupTrace = startupTrace;
+    }
+
+    public void setPipelineScheduler(PipelineScheduler pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    //for onDestroy, after the stages using the detectors have stopped
+    public void close() {
+        ready = false;
+        ObjectDetector live = objectDetector;
+        ObjectDetector capture = captureDetector;
+        objectDetector = null;
+        captureDetector = null;
+        liveDetector.setDetector(null);
+        if (capture != null && capture != live) {
+            capture.close();
+        }
+        if (live != null) {
+            live.close();
+        }
+    }
+
+    private ObjectDetector createDetector(RunningMode mode) {
+        //mediapipe modell in assets folder
+        BaseOptions baseOptions = BaseOptions.builder()
+                .setModelAssetPath("ssd_mobilenet_v2.tflite")
+                .build();
+
+        ObjectDetector.ObjectDetectorOptions.Builder builder = ObjectDetector.ObjectDetectorOptions.builder()
+                        .setBaseOptions(baseOptions)
+                        .setRunningMode(mode)
+                        .setMaxResults(1)
+                        .setScoreThreshold(0.4f); //set high to avoid flickering boxes ans bad predictions. if too high won't detect anything
+
+        if (mode == RunningMode.LIVE_STREAM) {
+            builder.setResultListener(liveDetector::onLiveResult)
+                    .setErrorListener(liveDetector::onError);
+        }
+        return ObjectDetector.createFromOptions(activity, builder.build());
+    }
+
+
+    //camera frame analysis
+    //real-time detection loop
+    //This method is called repeatedly by CameraX on a background thread
+    //CameraX → ImageProxy → FramePipeline (scheduler, YUV → ARGB, MediaPipe, tracker) → onResult
+    public void analyzeFrame(@NonNull ImageProxy imageProxy) {
+        long arrival = System.nanoTime();
+        long timestampMs = Math.max(imageProxy.getImageInfo().getTimestamp() / 1_000_000L, lastTimestampMs + 1);
+        lastTimestampMs = timestampMs;
+
+        //LIVE_STREAM with all frames in flight: the pipeline skips it, counted as dropped
+        if (liveDetector.isBusy()) {
+            stats.onDropped();
+        }
+        arrivalTimestampMs[nextArrival] = timestampMs;
+        arrivalNanos[nextArrival] = arrival;
+        nextArrival = (nextArrival + 1) % ARRIVAL_SLOTS;
+
+        framePipeline.process(toFrame(imageProxy, timestampMs));
+        imageProxy.close();
+    }
+
+    //frame without inference (live detection paused): move the tracked boxes to where they should be now
+    public void skipFrame(@NonNull ImageProxy imageProxy) {
+        long timestampMs = imageProxy.getImageInfo().getTimestamp() / 1_000_000L;
+        imageProxy.close();
+        framePipeline.skip(timestampMs);
+    }
+
+    //same planes and strides the analyzer sees, no copy. RGBA_8888 output (QualityGovernor) has one plane
+    private static YuvFrame toFrame(ImageProxy image, long timestampMs) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        int rotation = image.getImageInfo().getRotationDegrees();
+        if (planes.length == 1) {
+            return new YuvFrame(planes[0].getBuffer(), null, null, planes[0].getRowStride(), planes[0].getPixelStride(),
+                    0, 0, image.getWidth(), image.getHeight(), rotation, timestampMs * 1_000_000L);
+        }
+        return new YuvFrame(planes[0].getBuffer(), planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight(), rotation, timestampMs * 1_000_000L);
+    }
+
+    //ResultSink of the frame pipeline: camera thread (IMAGE, skipped frames) or MediaPipe's thread (LIVE_STREAM)
+    private void onResult(long timestampMs, List<DetectionBox> tracked, int frameWidth, int frameHeight, boolean inferred) {
+        if (!inferred) {
+            if (tracked.isEmpty() && latestBoxes.isEmpty()) {
+                return; //nothing to move
+            }
+            latestBoxes = tracked;
+            activity.runOnUiThread(() -> overlay.setResults(tracked, frameWidth, frameHeight));
+            return;
+        }
+        long arrival = System.nanoTime();
+        for (int i = 0; i < ARRIVAL_SLOTS; i++) {
+            if (arrivalTimestampMs[i] == timestampMs) {
+                arrival = arrivalNanos[i];
+                break;
+            }
+        }
+        showResult(tracked, frameWidth, frameHeight, arrival);
+    }
+
+    private void showResult(List<DetectionBox> tracked, int frameWidth, int frameHeight, long arrivalNanos) {
+        //only the results go to the ui, the overlay draws them at preview resolution
+        String message;
+        if (tracked.isEmpty()) {
+            message = "❌ No detections";
+        } else {
+            DetectionBox best = tracked.get(0);
+            message = "✅ Detected: " + best.label + " (score: " + String.format("%.3f", best.score) + ")";
+        }
+        //tracks survive a missed detection, so the box doesn't flicker
+        lastFrameWidth = frameWidth;
+        lastFrameHeight = frameHeight;
+        latestBoxes = tracked;
+
+        //ui updates must be on main thread otherwise app crashes
+        long postNanos = System.nanoTime();
+        activity.runOnUiThread(() -> {
+            metrics.recordSince(PipelineMetrics.Stage.UI_POST, postNanos);
+            //a captured image may have replaced the live overlay, switch back
+            if (overlayView.getDrawable() != overlay) {
+                overlayView.setImageDrawable(overlay);
+            }
+            overlay.setResults(tracked, frameWidth, frameHeight);
+            if (startupTrace != null) {
+                startupTrace.mark(StartupTrace.Milestone.FIRST_DETECTION);
+            }
+            //end to end: frame arrival until it is on screen
+            stats.onResult(arrivalNanos, System.nanoTime());
+            String status = hudEnabled
+                    ? metrics.summary() + "\ngc " + Debug.getRuntimeStat("art.gc.gc-count")
+                            + (startupTrace != null ? "\n" + startupTrace.summary() : "")
+                            + (pipeline != null ? "\n" + pipeline.summary() : "")
+                    : message + "\n" + runningMode + ": " + stats.summary() + "\n" + framePipeline.getScheduler().summary();
+            String quality = qualityStatus;
+            if (quality != null) {
+                status = status + "\n" + quality;
+            }
+            String extra = extraStatus;
+            debugText.setText(extra == null ? status : status + "\n" + extra);
+        });
+    }
+
+    public FrameStats getStats() {
+        return stats;
+    }
+
+    public DetectionScheduler getScheduler() {
+        return framePipeline.getScheduler();
+    }
+
+    //best tracked box relative to the frame (0..1), null if nothing is detected right now
+    public RectF getDocumentRegion() {
+        List<DetectionBox> boxes = latestBoxes;
+        int width = lastFrameWidth;
+        int height = lastFrameHeight;
+        if (boxes.isEmpty() || width == 0 || height == 0) {
+            return null;
+        }
+        DetectionBox best = boxes.get(0);
+        for (DetectionBox box : boxes) {
+            if (box.score > best.score) {
+                best = box;
+            }
+        }
+        return new RectF(best.left / width, best.top / height, best.right / width, best.bottom / height);
+    }
+
+    public void setQualityStatus(String qualityStatus) {
+        this.qualityStatus = qualityStatus;
+    }
+
+    public float getAverageConversionMs() {
+        return framePipeline.getAverageConversionMs();
+    }
+
+    public void setExtraStatus(String extraStatus) {
+        this.extraStatus = extraStatus;
+    }
+
+    public void setHudEnabled(boolean hudEnabled) {
+        this.hudEnabled = hudEnabled;
+    }
+
+    public boolean isHudEnabled() {
+        return hudEnabled;
+    }
+
+
+    //Detect object
+    //map the detected bounding box back to the original image size and draw the box on the original image.
+    //returns the box in original image coordinates (region for OCR), null if nothing was detected
+    public RectF processDocumentAlignment(Bitmap bitmap, ImageView targetView) {
+        ObjectDetector detector = captureDetector; //null until init() is done or after close()
+        if (detector == null){
+            return null;
+        }
+        //Resize image to model input size
+        int modelInputSize = MODEL_INPUT_SIZE;
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, modelInputSize, modelInputSize, true);
+
+        MPImage mpImage = new BitmapImageBuilder(scaled).build();
+        ObjectDetectorResult result = detector.detect(mpImage);
+        if (result.detections().isEmpty()) return null;
+
+        var best = result.detections().get(0);
+
+        //back to bitmap pixels, clamped to the bitmap. No margin and no pixel budget here, the callers add their own
+        RectF box = best.boundingBox();
+        CropRegion crop = CropRegion.fromModelBox(box.left, box.top, box.right, box.bottom, modelInputSize,
+                bitmap.getWidth(), bitmap.getHeight(), 0f, 0);
+        RectF scaledBox = new RectF(crop.left, crop.top, crop.left + crop.width, crop.top + crop.height);
+
+        Bitmap boxed = drawBoundingBox(bitmap, scaledBox);
+
+        activity.runOnUiThread(() -> targetView.setImageBitmap(boxed));
+        return scaledBox;
+    }
+
+    //draw rectangle without modifying the original bitmap. impact on orc otherwise
+    private Bitmap drawBoundingBox(Bitmap original, RectF box) {
+        Bitmap mutable = original.copy(Bitmap.Config.ARGB_8888, true);
+        Canvas canvas = new Canvas(mutable);
+
+        Paint paint = new Paint();
+        paint.setStyle(Paint.Style.STROKE); //outline only
+        paint.setStrokeWidth(8f);
+        paint.setColor(Color.GREEN);
+
+        canvas.drawRect(box, paint);
+        return mutable;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.myocrapp;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.view.PreviewView;
+
+import com.example.myocrapp.core.DetectionBox;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.example.myocrapp.core.PreviewMapping;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class responsibility:
+ * Drawing detection results (boxes, labels, scores) on top of the camera preview
+ * Mapping analysis frame coordinates to preview coordinates (scale type, crop)
+ *
+ * Only the result list is handed over per frame, nothing is allocated in proportion
+ * to the frame size. Hosted by the overlay ImageView, which stretches a drawable
+ * without intrinsic size over the whole view (the overlay covers the PreviewView).
+ * All methods must be called on the main thread.
+ */
+public class DetectionOverlay extends Drawable {
+
+    private final Paint boxPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelBackground = new Paint();
+    private final PreviewMapping mapping = new PreviewMapping();
+
+    private List<DetectionBox> boxes = Collections.emptyList();
+    private int frameWidth;
+    private int frameHeight;
+    private PreviewView.ScaleType scaleType = PreviewView.ScaleType.FILL_CENTER;
+    private boolean mirrored; //front camera
+
+    public DetectionOverlay(float density) {
+        boxPaint.setStyle(Paint.Style.STROKE); //outline only
+        boxPaint.setStrokeWidth(3f * density);
+        boxPaint.setColor(Color.GREEN);
+
+        labelPaint.setColor(Color.BLACK);
+        labelPaint.setTextSize(14f * density);
+
+        labelBackground.setColor(Color.GREEN);
+    }
+
+    //called from the ui thread with the results of one analysed frame
+    public void setResults(@NonNull List<DetectionBox> boxes, int frameWidth, int frameHeight) {
+        this.boxes = boxes;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        invalidateSelf();
+    }
+
+    public void clear() {
+        boxes = Collections.emptyList();
+        invalidateSelf();
+    }
+
+    //has to match the scale type of the PreviewView underneath
+    public void setScaleType(@NonNull PreviewView.ScaleType scaleType) {
+        this.scaleType = scaleType;
+        invalidateSelf();
+    }
+
+    public void setMirrored(boolean mirrored) {
+        this.mirrored = mirrored;
+        invalidateSelf();
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (boxes.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Rect bounds = getBounds();
+        mapping.update(frameWidth, frameHeight, bounds.width(), bounds.height(),
+                isFill(scaleType), alignOf(scaleType), mirrored);
+
+        canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        for (int i = 0; i < boxes.size(); i++) {
+            DetectionBox box = boxes.get(i);
+            float x1 = mapping.mapX(box.left);
+            float x2 = mapping.mapX(box.right);
+            float left = Math.min(x1, x2);
+            float right = Math.max(x1, x2);
+            float top = mapping.mapY(box.top);
+            float bottom = mapping.mapY(box.bottom);
+
+            canvas.drawRect(left, top, right, bottom, boxPaint);
+
+            if (box.label != null) {
+                String text = box.label + " " + Math.round(box.score * 100) + "%";
+                float textWidth = labelPaint.measureText(text);
+                float textHeight = labelPaint.getTextSize();
+                float labelTop = Math.max(0f, top - textHeight - 4f);
+                canvas.drawRect(left, labelTop, left + textWidth + 8f, labelTop + textHeight + 4f, labelBackground);
+                canvas.drawText(text, left + 4f, labelTop + textHeight - 2f, labelPaint);
+            }
+        }
+        canvas.restore();
+        PipelineMetrics.get().recordSince(PipelineMetrics.Stage.OVERLAY_RENDER, start);
+    }
+
+    private static boolean isFill(PreviewView.ScaleType type) {
+        return type == PreviewView.ScaleType.FILL_START
+                || type == PreviewView.ScaleType.FILL_CENTER
+                || type == PreviewView.ScaleType.FILL_END;
+    }
+
+    private static int alignOf(PreviewView.ScaleType type) {
+        switch (type) {
+            case FILL_START:
+            case FIT_START:
+                return PreviewMapping.ALIGN_START;
+            case FILL_END:
+            case FIT_END:
+                return PreviewMapping.ALIGN_END;
+            default:
+                return PreviewMapping.ALIGN_CENTER;
+        }
+    }
+
+    //no intrinsic size: the hosting ImageView sets the bounds to the full view
+    @Override
+    public int getIntrinsicWidth() {
+        return -1;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return -1;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        boxPaint.setAlpha(alpha);
+        labelPaint.setAlpha(alpha);
+        labelBackground.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        boxPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
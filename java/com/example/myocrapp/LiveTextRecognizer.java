@@ -0,0 +1,142 @@
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import com.example.myocrapp.core.CropRegion;
+import com.example.myocrapp.core.FrameStats;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.example.myocrapp.core.TextStabilizer;
+import com.example.myocrapp.core.YuvToRgbConverter;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class responsibility:
+ * Continuous OCR on analysis frames (optional live mode)
+ * Throttled to one recognition per interval, never more than one in flight
+ * Only the detected document region is recognized when there is one
+ * Results of consecutive frames are fused by TextStabilizer
+ *
+ * Uses the shared recognizer of MlKitClientRegistry, no extra client. It is fetched on the first
+ * frame offered while enabled, so creating this class costs nothing at startup.
+ */
+public class LiveTextRecognizer {
+
+    //main thread
+    public interface Listener {
+        void onLiveText(String text, String status);
+    }
+
+    private static final long MIN_INTERVAL_MS = 400; //~2.5 Hz is enough to converge, leaves the cpu to detection
+    private static final int VOTE_WINDOW = 5;
+
+    private final MlKitClientRegistry clients;
+    private final Listener listener;
+    private final YuvToRgbConverter converter = new YuvToRgbConverter(); //full analysis resolution, separate from detection
+    private final TextStabilizer stabilizer = new TextStabilizer(VOTE_WINDOW);
+    private final FrameStats stats = new FrameStats();
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+
+    private volatile boolean enabled;
+    private long lastStartMs = Long.MIN_VALUE;
+    private Bitmap frame; //reused, only written while nothing is in flight
+
+    public LiveTextRecognizer(@NonNull MlKitClientRegistry clients, @NonNull Listener listener) {
+        this.clients = clients;
+        this.listener = listener;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            stabilizer.reset();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //camera thread, before the frame is closed
+    //region relative to the upright frame (0..1), null = whole frame
+    public void offer(@NonNull ImageProxy image, @Nullable RectF region) {
+        if (!enabled || inFlight.get()) {
+            return;
+        }
+        long timestampMs = image.getImageInfo().getTimestamp() / 1_000_000L;
+        if (lastStartMs != Long.MIN_VALUE && timestampMs - lastStartMs < MIN_INTERVAL_MS) {
+            return;
+        }
+        TextRecognizer recognizer = clients.getRecognizerIfOpen();
+        if (recognizer == null) {
+            return; //activity is being destroyed
+        }
+        lastStartMs = timestampMs;
+        inFlight.set(true);
+        long startNanos = System.nanoTime();
+
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        int[] pixels = planes.length == 1 //RGBA_8888 analysis output
+                ? converter.convertRgba(planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                        image.getWidth(), image.getHeight(), image.getImageInfo().getRotationDegrees(), 1)
+                : converter.convert(
+                        planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                        planes[1].getBuffer(), planes[2].getBuffer(),
+                        planes[1].getRowStride(), planes[1].getPixelStride(),
+                        image.getWidth(), image.getHeight(),
+                        image.getImageInfo().getRotationDegrees(), 1);
+        int width = converter.getOutputWidth();
+        int height = converter.getOutputHeight();
+        if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+            frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            PipelineMetrics.get().countAllocation(frame.getAllocationByteCount());
+        }
+        frame.setPixels(pixels, 0, width, 0, 0, width, height);
+
+        Bitmap input = frame;
+        if (region != null) {
+            CropRegion crop = CropRegion.fromImageBox(region.left * width, region.top * height,
+                    region.right * width, region.bottom * height, width, height, 0.05f, 0);
+            if (!crop.isFullFrame(width, height)) {
+                input = Bitmap.createBitmap(frame, crop.left, crop.top, crop.width, crop.height);
+                PipelineMetrics.get().countAllocation(input.getAllocationByteCount());
+            }
+        }
+
+        recognizer.process(InputImage.fromBitmap(input, 0))
+                .addOnSuccessListener(text -> {
+                    String fused = stabilizer.add(linesOf(text));
+                    stats.onResult(startNanos, System.nanoTime());
+                    if (enabled) {
+                        listener.onLiveText(fused, summary());
+                    }
+                })
+                .addOnCompleteListener(task -> inFlight.set(false));
+    }
+
+    private static List<String> linesOf(Text text) {
+        List<String> lines = new ArrayList<>();
+        for (Text.TextBlock block : text.getTextBlocks()) {
+            for (Text.Line line : block.getLines()) {
+                lines.add(line.getText());
+            }
+        }
+        return lines;
+    }
+
+    //effective OCR rate and recognition latency
+    public String summary() {
+        return String.format(Locale.US, "live OCR %.1f Hz | %.0f ms", stats.getFps(), stats.getAverageLatencyMs());
+    }
+}
@@ -4,7 +4,7 @@ package com.example.myocrapp;
 import android.Manifest;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.graphics.RectF;
 import android.os.Bundle;
 import android.os.Environment;
 import android.text.method.ScrollingMovementMethod;
@@ -16,22 +16,58 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.view.PreviewView;
-import androidx.core.content.ContextCompat;
+
+import com.example.myocrapp.core.CaptureStore;
+import com.example.myocrapp.core.LatencyStats;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.example.myocrapp.core.PipelineScheduler;
+import com.example.myocrapp.core.PipelineStage;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MainActivity extends AppCompatActivity {
 
+    //LIVE_STREAM pipelines conversion and inference, IMAGE blocks the camera thread per frame.
+    //Compare the fps/latency line in debugText to pick the faster one for a device
+    private static final RunningMode DETECTION_MODE = RunningMode.LIVE_STREAM;
+    private static final int DETECTION_MAX_IN_FLIGHT = 2;
+
+    //in-memory capture skips the write-then-decode round trip, file capture is kept for comparison
+    private static final boolean IN_MEMORY_CAPTURE = true;
+    private static final boolean ARCHIVE_CAPTURES = true; //in-memory path: still keep the JPEG on disk
+    private static final int MAX_CAPTURE_PIXELS = 4_000_000; //decode budget, OCR scales to 3 MP anyway
+    //archive budget, least recently used captures are deleted beyond it
+    private static final long CAPTURE_BUDGET_BYTES = 200_000_000L;
+    private static final int CAPTURE_BUDGET_COUNT = 300;
+    private static final boolean REENCODE_ARCHIVE = true; //older captures are rewritten smaller on the io stage
+    private static final int KEEP_FULL_RESOLUTION = 5; //most recently used captures stay as taken
+    private static final int ARCHIVE_MAX_SIDE = 1600; //long side of re-encoded captures, still enough for OCR
+    private static final int ARCHIVE_JPEG_QUALITY = 85;
+    private static final int REOPEN_DETECT_PIXELS = 1_000_000; //decode of a stored capture to find the document in
+    private static final long STAGE_SHUTDOWN_MS = 1000; //per stage, onDestroy waits for running work before closing models
+    private static final long LATE_RELEASE_MS = 30_000; //stuck stage: models are released in the background once it ends
+    private static final int RECORD_FRAMES = 100; //~3 s of analysis frames, tools menu
+
     private PreviewView previewView;
     private ImageView overlayView;
+    private DetectionOverlay detectionOverlay; //live boxes, drawn in preview coordinates
     private EditText resultText;
     private TextView debugText;
     private Button captureImgBtn;
@@ -41,18 +77,34 @@ public class MainActivity extends AppCompatActivity {
     private DetectionHandler detectionHandler; //Live document detection runs on every frame
     private OCRHandler ocrHandler; //text recognition runs after capture
     private CameraHandler cameraHandler;
+    private LiveTextRecognizer liveTextRecognizer; //optional continuous OCR, toggled in the tools dialog
+    private BatchOcrRunner batchOcrRunner; //OCR of stored captures, started from the tools dialog
+    private CaptureStore captureStore; //archived captures within a disk budget
 
     private ActivityResultLauncher<String> requestPermissionLauncher;
 
+    //worker stages, shut down in this order in onDestroy before the models are closed
+    private final PipelineScheduler pipeline = new PipelineScheduler();
+    private final PipelineStage analysisStage = pipeline.addStage("analysis", 1, 4, false); //camera frames: convert + detect
+    private final PipelineStage captureStage = pipeline.addStage("capture", 1, 4, false); //model init, capture callbacks
+    private final PipelineStage ocrStage = pipeline.addStage("ocr", 1, 2, true); //decode, dedup, alignment, OCR of captures
+    private final PipelineStage ioStage = pipeline.addStage("io", 1, 16, false); //captures and exports to disk
+    private final LatencyStats inMemoryLatency = new LatencyStats("in-memory");
+    private final LatencyStats fileLatency = new LatencyStats("file");
+    private final StartupTrace startupTrace = new StartupTrace(); //cold start milestones, shown in the HUD
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        startupTrace.mark(StartupTrace.Milestone.ACTIVITY_CREATED);
         setContentView(R.layout.activity_main);
 
         // UI Elements
         previewView = findViewById(R.id.previewView);
         overlayView = findViewById(R.id.overlayView);
-        overlayView.setImageBitmap(null);
+        detectionOverlay = new DetectionOverlay(getResources().getDisplayMetrics().density);
+        detectionOverlay.setScaleType(previewView.getScaleType());
+        overlayView.setImageDrawable(detectionOverlay);
 
         resultText = findViewById(R.id.resultText);
         debugText = findViewById(R.id.debugText);
@@ -65,11 +117,35 @@ public class MainActivity extends AppCompatActivity {
         translateBtn.setVisibility(Button.GONE);
 
         // Handlers
-        detectionHandler = new DetectionHandler(this, overlayView, debugText);
+        detectionHandler = new DetectionHandler(this, overlayView, detectionOverlay, debugText,
+                DETECTION_MODE, DETECTION_MAX_IN_FLIGHT);
         ocrHandler = new OCRHandler(this, resultText, copyTextBtn, translateBtn);
+        ocrHandler.setCaptureReopenListener(this::reopenCapture);
+        captureStore = new CaptureStore(getExternalFilesDir(Environment.DIRECTORY_PICTURES),
+                CAPTURE_BUDGET_BYTES, CAPTURE_BUDGET_COUNT);
+        submitIo(() -> {
+            captureStore.load();
+            archiveCaptures(); //also catches up on captures of runs before the budget existed
+        });
+        //models load in the background, the camera preview doesn't wait for them.
+        //captureStage also runs the capture callbacks, so a capture during startup simply queues behind the init
+        detectionHandler.setStartupTrace(startupTrace);
+        detectionHandler.setPipelineScheduler(pipeline);
+        detectionHandler.init(captureStage, ocrHandler::warmUp);
+        previewView.getPreviewStreamState().observe(this, state -> {
+            if (state == PreviewView.StreamState.STREAMING) {
+                startupTrace.mark(StartupTrace.Milestone.FIRST_PREVIEW);
+            }
+        });
 
         // Camera
-        cameraHandler = new CameraHandler(this, previewView, detectionHandler);
+        cameraHandler = new CameraHandler(this, previewView, detectionHandler, pipeline, analysisStage);
+
+        liveTextRecognizer = ocrHandler.createLiveTextRecognizer((text, status) -> {
+            ocrHandler.showLiveText(text);
+            detectionHandler.setExtraStatus(status);
+        });
+        cameraHandler.setLiveTextRecognizer(liveTextRecognizer);
 
         // Permissions
         requestPermissionLauncher = registerForActivityResult(
@@ -87,9 +163,117 @@ public class MainActivity extends AppCompatActivity {
             requestPermissionLauncher.launch(Manifest.permission.CAMERA);
         }
 
-        // Capture button
+        // Capture button, long press opens the tools
         captureImgBtn.setOnClickListener(v -> captureImage());
+        captureImgBtn.setOnLongClickListener(v -> {
+            showTools();
+            return true;
+        });
+
+    }
+
+    //options without own buttons in the layout
+    private void showTools() {
+        String[] tools = {
+                liveTextRecognizer.isEnabled() ? "Stop live OCR" : "Start live OCR",
+                batchOcrRunner != null && batchOcrRunner.isRunning() ? "Stop batch OCR" : "Batch OCR stored captures",
+                detectionHandler.isHudEnabled() ? "Hide performance HUD" : "Show performance HUD",
+                "Export metrics",
+                "Record " + RECORD_FRAMES + " analysis frames",
+                ocrHandler.isPreprocessingEnabled() ? "Turn OCR preprocessing off" : "Turn OCR preprocessing on",
+                "Search OCR history"
+        };
+        new AlertDialog.Builder(this)
+                .setTitle("Tools (" + captureStore.summary() + ")")
+                .setItems(tools, (dialog, which) -> {
+                    if (which == 0) {
+                        toggleLiveOcr();
+                    } else if (which == 1) {
+                        toggleBatchOcr();
+                    } else if (which == 2) {
+                        detectionHandler.setHudEnabled(!detectionHandler.isHudEnabled());
+                    } else if (which == 3) {
+                        exportMetrics();
+                    } else if (which == 4) {
+                        recordFrames();
+                    } else if (which == 5) {
+                        togglePreprocessing();
+                    } else if (which == 6) {
+                        ocrHandler.showHistorySearch();
+                    }
+                })
+                .show();
+    }
+
+    //A/B switch: captures alternate between modes as the user toggles, the numbers so far are shown each time
+    private void togglePreprocessing() {
+        ocrHandler.setPreprocessingEnabled(!ocrHandler.isPreprocessingEnabled());
+        new AlertDialog.Builder(this)
+                .setTitle(ocrHandler.isPreprocessingEnabled() ? "OCR preprocessing on" : "OCR preprocessing off")
+                .setMessage(ocrHandler.preprocessingSummary())
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
+    //results stream to batch_ocr.jsonl, the checkpoint makes a new start resume where the last one stopped
+    private void toggleBatchOcr() {
+        if (batchOcrRunner != null && batchOcrRunner.isRunning()) {
+            batchOcrRunner.cancel();
+            return;
+        }
+        File outDir = getExternalFilesDir(null);
+        List<File> captures = BatchOcrRunner.listCaptures(getExternalFilesDir(Environment.DIRECTORY_PICTURES));
+        batchOcrRunner = ocrHandler.createBatchOcrRunner(captures,
+                new File(outDir, "batch_ocr.jsonl"),
+                new File(outDir, "batch_ocr.checkpoint"),
+                BatchOcrRunner.defaultWorkers(),
+                new BatchOcrRunner.Listener() {
+                    @Override
+                    public void onProgress(int done, int total, String status) {
+                        detectionHandler.setExtraStatus("batch " + status);
+                    }
+
+                    @Override
+                    public void onFinished(String status) {
+                        detectionHandler.setExtraStatus(null);
+                        runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                                "Batch OCR " + status, Toast.LENGTH_LONG).show());
+                    }
+                });
+        batchOcrRunner.start();
+        Toast.makeText(this, "Batch OCR started: " + captures.size() + " images", Toast.LENGTH_SHORT).show();
+    }
+
+    //raw YUV frames for replaying the pipeline on a desktop JVM (core.PipelineBenchmark)
+    private void recordFrames() {
+        String ts = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        File file = new File(getExternalFilesDir(null), "frames_" + ts + ".yuvrec");
+        Toast.makeText(this, "Recording...", Toast.LENGTH_SHORT).show();
+        cameraHandler.startRecording(file, RECORD_FRAMES,
+                () -> Toast.makeText(this, "Frames: " + file.getAbsolutePath(), Toast.LENGTH_SHORT).show());
+    }
+
+    //csv with per-stage percentiles, for comparing builds/devices offline
+    private void exportMetrics() {
+        String ts = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        File file = new File(getExternalFilesDir(null), "metrics_" + ts + ".csv");
+        submitIo(() -> {
+            try {
+                PipelineMetrics.get().exportCsv(file);
+                runOnUiThread(() -> Toast.makeText(this, "Metrics: " + file.getAbsolutePath(), Toast.LENGTH_SHORT).show());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
 
+    private void toggleLiveOcr() {
+        boolean enable = !liveTextRecognizer.isEnabled();
+        liveTextRecognizer.setEnabled(enable);
+        if (!enable) {
+            detectionHandler.setExtraStatus(null);
+        }
+        Toast.makeText(this, enable ? "Live OCR on" : "Live OCR off", Toast.LENGTH_SHORT).show();
     }
 
     //image capture for ocr not live detection
@@ -98,49 +282,220 @@ public class MainActivity extends AppCompatActivity {
         if (capture == null) {
             return;
         }
+        long tapNanos = System.nanoTime();
+        //the captured text should not be overwritten by live results
+        if (liveTextRecognizer.isEnabled()) {
+            toggleLiveOcr();
+        }
+        //live detection pauses until the text is shown (endUserWork in processCapture / on errors)
+        long userWork = pipeline.beginUserWork();
+        if (IN_MEMORY_CAPTURE) {
+            captureInMemory(capture, tapNanos, userWork);
+        } else {
+            captureToFile(capture, tapNanos, userWork);
+        }
+    }
 
-        File photoFile = createImageFile();
+    //frame stays in memory, decoding and OCR setup happen on the ocr stage, file is written afterwards if wanted
+    private void captureInMemory(ImageCapture capture, long tapNanos, long userWork) {
+        capture.takePicture(captureStage, new ImageCapture.OnImageCapturedCallback() {
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                //ImageCapture delivers JPEG, the encoded bytes are the only copy we need
+                ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                byte[] jpeg = new byte[buffer.remaining()];
+                buffer.get(jpeg);
+                int rotation = image.getImageInfo().getRotationDegrees();
+                image.close();
+
+                File photoFile = ARCHIVE_CAPTURES ? captureStore.newFile() : null; //name known now, for the history
+                if (photoFile != null) {
+                    submitIo(() -> writeCapture(jpeg, photoFile));
+                }
+                submitOcr(() -> processCapture(CaptureDecoder.decodeJpeg(jpeg, rotation, MAX_CAPTURE_PIXELS),
+                        inMemoryLatency, tapNanos, photoFile, userWork), userWork);
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                pipeline.endUserWork(userWork);
+                runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                        "Capture failed: " + exception.getMessage(),
+                        Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    private void captureToFile(ImageCapture capture, long tapNanos, long userWork) {
+        File photoFile = captureStore.newFile();
         ImageCapture.OutputFileOptions outputOptions = new ImageCapture.OutputFileOptions.Builder(photoFile).build();
 
         capture.takePicture(outputOptions,
-                ContextCompat.getMainExecutor(this),
+                captureStage,
                 new ImageCapture.OnImageSavedCallback() {
                     @Override
                     public void onImageSaved(ImageCapture.OutputFileResults outputFileResults) {
-                        Bitmap bitmap = BitmapFactory.decodeFile(photoFile.getAbsolutePath());
-                        if (bitmap != null) {
-                            detectionHandler.processDocumentAlignment(bitmap, overlayView);
-                            ocrHandler.recognizeText(bitmap);
-                        }
-                        Toast.makeText(MainActivity.this,
+                        submitIo(() -> onCaptureStored(photoFile));
+                        submitOcr(() -> processCapture(CaptureDecoder.decodeFile(photoFile, MAX_CAPTURE_PIXELS),
+                                fileLatency, tapNanos, photoFile, userWork), userWork);
+                        runOnUiThread(() -> Toast.makeText(MainActivity.this,
                                 "Saved: " + photoFile.getAbsolutePath(),
-                                Toast.LENGTH_SHORT).show();
+                                Toast.LENGTH_SHORT).show());
                     }
 
                     @Override
                     public void onError(ImageCaptureException exception) {
-                        Toast.makeText(MainActivity.this,
+                        pipeline.endUserWork(userWork);
+                        runOnUiThread(() -> Toast.makeText(MainActivity.this,
                                 "Capture failed: " + exception.getMessage(),
-                                Toast.LENGTH_SHORT).show();
+                                Toast.LENGTH_SHORT).show());
                     }
                 });
     }
 
-    private File createImageFile() {
-        String ts = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        File dir = getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+    //bounded: more than two captures waiting means the user is faster than OCR, the new one is dropped
+    private void submitOcr(Runnable work, long userWork) {
         try {
-            return File.createTempFile("IMG_" + ts, ".jpg", dir);
+            ocrStage.execute(work);
+        } catch (RejectedExecutionException busy) {
+            pipeline.endUserWork(userWork);
+            runOnUiThread(() -> Toast.makeText(this, "Still busy with the last captures", Toast.LENGTH_SHORT).show());
+        }
+    }
+
+    //bounded too, and called from CameraX callbacks: a full queue drops the disk work instead of throwing.
+    //A capture not written only misses in the archive, its OCR runs anyway
+    private void submitIo(Runnable work) {
+        try {
+            ioStage.execute(work);
+        } catch (RejectedExecutionException busy) {
+            runOnUiThread(() -> Toast.makeText(this, "Storage busy, skipped", Toast.LENGTH_SHORT).show());
+        }
+    }
+
+    //ocr stage: dedup, alignment, OCR. Live detection resumes once the text is shown
+    private void processCapture(Bitmap bitmap, LatencyStats stats, long tapNanos, @Nullable File captureFile, long userWork) {
+        if (bitmap == null) {
+            pipeline.endUserWork(userWork);
+            return;
+        }
+        //same page as a recent capture: no alignment, no OCR
+        long hash = CaptureDecoder.perceptualHash(bitmap);
+        Runnable onDone = () -> {
+            pipeline.endUserWork(userWork);
+            reportTapToText(stats, tapNanos);
+        };
+        if (ocrHandler.showCached(hash, onDone)) {
+            return;
+        }
+        //OCR only the detected document, full frame if nothing was found
+        RectF region = detectionHandler.processDocumentAlignment(bitmap, overlayView);
+        ocrHandler.recognizeText(bitmap, region, hash, captureFile, onDone);
+    }
+
+    //runs on the io stage, never blocks the capture
+    private void writeCapture(byte[] jpeg, File photoFile) {
+        try (FileOutputStream out = new FileOutputStream(photoFile)) {
+            out.write(jpeg);
         } catch (IOException e) {
             e.printStackTrace();
-            return new File(dir, "IMG_" + ts + ".jpg");
+            return;
         }
+        onCaptureStored(photoFile);
     }
 
+    //io stage: counts the new capture, evicts over budget and shrinks older ones
+    private void onCaptureStored(File photoFile) {
+        captureStore.commit(photoFile);
+        archiveCaptures();
+    }
+
+    //io stage, one capture decoded at a time. Captures already small enough are only checked by their bounds, once per run
+    private void archiveCaptures() {
+        if (!REENCODE_ARCHIVE) {
+            return;
+        }
+        for (File file : captureStore.archiveCandidates(KEEP_FULL_RESOLUTION)) {
+            CaptureDecoder.reencode(file, ARCHIVE_MAX_SIDE, ARCHIVE_JPEG_QUALITY);
+            captureStore.archived(file);
+        }
+    }
+
+    //history entry opened again for OCR: document found on a small decode, then only that region decoded
+    private void reopenCapture(File file) {
+        long userWork = pipeline.beginUserWork();
+        submitOcr(() -> {
+            captureStore.touch(file);
+            Bitmap preview = CaptureDecoder.decodeFile(file, REOPEN_DETECT_PIXELS);
+            if (preview == null) {
+                pipeline.endUserWork(userWork);
+                runOnUiThread(() -> Toast.makeText(this, "Capture can't be read", Toast.LENGTH_SHORT).show());
+                return;
+            }
+            RectF box = detectionHandler.processDocumentAlignment(preview, overlayView);
+            Bitmap bitmap = null;
+            if (box != null) {
+                //relative, with the margin OCR would add around the box anyway
+                float marginX = 0.05f * box.width();
+                float marginY = 0.05f * box.height();
+                RectF region = new RectF((box.left - marginX) / preview.getWidth(), (box.top - marginY) / preview.getHeight(),
+                        (box.right + marginX) / preview.getWidth(), (box.bottom + marginY) / preview.getHeight());
+                bitmap = CaptureDecoder.decodeRegion(file, region, MAX_CAPTURE_PIXELS);
+            }
+            if (bitmap == null) {
+                bitmap = CaptureDecoder.decodeFile(file, MAX_CAPTURE_PIXELS);
+            }
+            preview.recycle();
+            if (bitmap == null) {
+                pipeline.endUserWork(userWork);
+                return;
+            }
+            ocrHandler.recognizeText(bitmap, null, null, file, () -> pipeline.endUserWork(userWork));
+        }, userWork);
+    }
+
+    //main thread, called when the recognized text is on screen
+    private void reportTapToText(LatencyStats stats, long tapNanos) {
+        stats.record((System.nanoTime() - tapNanos) / 1_000_000L);
+        Toast.makeText(this, "Tap-to-text " + stats.summary(), Toast.LENGTH_SHORT).show();
+    }
+
+
+    //queued capture OCR and a running translation are for a screen nobody looks at anymore
+    @Override
+    protected void onPause() {
+        super.onPause();
+        pipeline.cancelPending();
+        ocrHandler.cancelPendingWork();
+    }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        //stop the producers first, then the stages, then release the native resources they used
         cameraHandler.shutdown();
+        if (batchOcrRunner != null) {
+            batchOcrRunner.cancel();
+        }
+        BatchOcrRunner batch = batchOcrRunner;
+        boolean stopped = pipeline.shutdown(STAGE_SHUTDOWN_MS)
+                & (batch == null || batch.awaitStopped(STAGE_SHUTDOWN_MS)); //its workers use the recognizer too
+        if (stopped) {
+            releaseModels();
+            return;
+        }
+        //models still used by a stuck stage (e.g. a slow init) must not be closed under it.
+        //Released once the stages have ended, or by process death if they never do
+        new Thread(() -> {
+            if (pipeline.shutdown(LATE_RELEASE_MS) && (batch == null || batch.awaitStopped(LATE_RELEASE_MS))) {
+                runOnUiThread(this::releaseModels);
+            }
+        }, "model-release").start();
+    }
+
+    //main thread, only after every stage has terminated
+    private void releaseModels() {
+        detectionHandler.close();
+        ocrHandler.close();
     }
 }
@@ -0,0 +1,156 @@
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+
+import com.example.myocrapp.core.DetectionBox;
+import com.example.myocrapp.core.Detector;
+import com.example.myocrapp.core.FramePipeline;
+import com.example.myocrapp.core.FrameStats;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.google.mediapipe.framework.image.BitmapImageBuilder;
+import com.google.mediapipe.framework.image.MPImage;
+import com.google.mediapipe.tasks.components.containers.Category;
+import com.google.mediapipe.tasks.components.containers.Detection;
+import com.google.mediapipe.tasks.vision.core.RunningMode;
+import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetector;
+import com.google.mediapipe.tasks.vision.objectdetector.ObjectDetectorResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class responsibility:
+ * MediaPipe's ObjectDetector behind the core Detector interface, so live frames run through FramePipeline
+ * IMAGE mode: blocking detect() on the camera thread, boxes returned right away
+ * LIVE_STREAM mode: detectAsync(), conversion of the next frame overlaps inference of the previous one,
+ * boxes go to FramePipeline.onDetections() from MediaPipe's thread. Late results are dropped
+ *
+ * The converted pixels are copied into one bitmap per possible in-flight frame (+1 being converted), reused round robin.
+ */
+class MediaPipeDetector implements Detector {
+
+    //LIVE_STREAM: results older than this are not worth drawing anymore
+    private static final long STALE_RESULT_MS = 500;
+
+    private final RunningMode runningMode;
+    private final int maxInFlight; //LIVE_STREAM: frames handed to detectAsync but not answered yet
+    private final FrameStats stats; //dropped late results
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+
+    private final Bitmap[] frameBitmaps;
+    private final long[] slotTimestampMs;
+    private final long[] slotSubmitNanos;
+    private int nextSlot; //camera thread
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile ObjectDetector detector; //set once created and warmed up, null after close
+    private volatile FramePipeline pipeline; //receives LIVE_STREAM results
+    private volatile boolean warmingUp; //LIVE_STREAM: the warm-up result must not reach the pipeline
+    private volatile long lastDeliveredTimestampMs;
+
+    MediaPipeDetector(RunningMode runningMode, int maxInFlight, FrameStats stats) {
+        this.runningMode = runningMode;
+        this.maxInFlight = runningMode == RunningMode.LIVE_STREAM ? Math.max(1, maxInFlight) : 1;
+        this.stats = stats;
+        frameBitmaps = new Bitmap[runningMode == RunningMode.LIVE_STREAM ? this.maxInFlight + 1 : 1];
+        slotTimestampMs = new long[frameBitmaps.length];
+        slotSubmitNanos = new long[frameBitmaps.length];
+    }
+
+    void setPipeline(FramePipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    void setDetector(ObjectDetector detector) {
+        this.detector = detector;
+    }
+
+    //LIVE_STREAM warm-up: the first inference allocates the tensors, its result is discarded in onLiveResult
+    void warmUp(ObjectDetector live, MPImage blank) {
+        warmingUp = true;
+        inFlight.incrementAndGet();
+        live.detectAsync(blank, 1);
+    }
+
+    @Override
+    public boolean isBusy() {
+        return runningMode == RunningMode.LIVE_STREAM && inFlight.get() >= maxInFlight;
+    }
+
+    @Override
+    public List<DetectionBox> detect(int[] argb, int width, int height, long timestampMs) {
+        ObjectDetector current = detector;
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % frameBitmaps.length;
+
+        //only reallocate when the analysis resolution or rotation changes
+        Bitmap bitmap = frameBitmaps[slot];
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            frameBitmaps[slot] = bitmap;
+            metrics.countAllocation(bitmap.getAllocationByteCount());
+        }
+        bitmap.setPixels(argb, 0, width, 0, 0, width, height);
+        //MPImage = MediaPipe’s internal image wrapper. Mediapipe can't handle bitmap
+        MPImage image = new BitmapImageBuilder(bitmap).build();
+
+        if (runningMode == RunningMode.LIVE_STREAM) {
+            slotTimestampMs[slot] = timestampMs;
+            slotSubmitNanos[slot] = System.nanoTime();
+            inFlight.incrementAndGet();
+            current.detectAsync(image, timestampMs); //result arrives in onLiveResult
+            return null;
+        }
+        return toBoxes(current.detect(image));
+    }
+
+    //LIVE_STREAM result listener, called on MediaPipe's thread
+    void onLiveResult(ObjectDetectorResult result, MPImage input) {
+        inFlight.decrementAndGet();
+        if (warmingUp) {
+            warmingUp = false;
+            return;
+        }
+        long timestampMs = result.timestampMs();
+        long now = System.nanoTime();
+        long submitNanos = now;
+        for (int i = 0; i < slotTimestampMs.length; i++) {
+            if (slotTimestampMs[i] == timestampMs) {
+                submitNanos = slotSubmitNanos[i];
+                break;
+            }
+        }
+
+        //drop results that are older than what is already shown or simply too late
+        if (timestampMs <= lastDeliveredTimestampMs || (now - submitNanos) / 1_000_000L > STALE_RESULT_MS) {
+            stats.onDropped();
+            return;
+        }
+        lastDeliveredTimestampMs = timestampMs;
+
+        FramePipeline target = pipeline;
+        if (target != null) {
+            target.onDetections(toBoxes(result), timestampMs, input.getWidth(), input.getHeight(), now - submitNanos);
+        }
+    }
+
+    void onError(RuntimeException e) {
+        inFlight.set(0);
+        e.printStackTrace();
+    }
+
+    static List<DetectionBox> toBoxes(ObjectDetectorResult result) {
+        List<DetectionBox> boxes = new ArrayList<>(result.detections().size());
+        for (Detection d : result.detections()) {
+            RectF box = d.boundingBox();
+            Category c = d.categories().get(0);
+            boxes.add(new DetectionBox(box.left, box.top, box.right, box.bottom, c.categoryName(), c.score()));
+        }
+        return boxes;
+    }
+}
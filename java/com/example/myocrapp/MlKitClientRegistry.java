@@ -0,0 +1,191 @@
+package com.example.myocrapp;
+
+import android.graphics.Bitmap;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.nl.languageid.LanguageIdentification;
+import com.google.mlkit.nl.languageid.LanguageIdentifier;
+import com.google.mlkit.nl.translate.Translation;
+import com.google.mlkit.nl.translate.Translator;
+import com.google.mlkit.nl.translate.TranslatorOptions;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.TextRecognition;
+import com.google.mlkit.vision.text.TextRecognizer;
+import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class responsibility:
+ * Owning the long-lived ML Kit clients of OCRHandler
+ * One text recognizer and one language identifier for the whole activity
+ * Small LRU pool of translators keyed by (source, target), closed on eviction once nobody uses them anymore
+ * Prefetching translation models and remembering which pairs are ready
+ * Closing everything when the activity is destroyed
+ *
+ * Clients are created on first use, warmUp() does that (and loads the OCR model) on a background thread.
+ */
+public class MlKitClientRegistry {
+
+    private static final int MAX_TRANSLATORS = 3; //each translator holds a loaded model
+
+    private TextRecognizer recognizer;
+    private LanguageIdentifier languageIdentifier;
+
+    //access order = LRU, eldest entry leaves the pool when it is full. It is closed right away if unused,
+    //otherwise by the last releaseTranslator()
+    private final LinkedHashMap<String, Translator> translators =
+            new LinkedHashMap<String, Translator>(MAX_TRANSLATORS + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Translator> eldest) {
+                    if (size() > MAX_TRANSLATORS) {
+                        Translator translator = eldest.getValue();
+                        if (users.containsKey(translator)) {
+                            evicted.add(translator);
+                        } else {
+                            translator.close();
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+    private final Map<Translator, Integer> users = new IdentityHashMap<>(); //running translations and downloads
+    private final Set<Translator> evicted = new HashSet<>(); //out of the pool, still in use
+
+    private final Set<String> readyModels = new HashSet<>(); //pairs whose models are on the device
+    private boolean closed;
+
+    public synchronized TextRecognizer getRecognizer() {
+        checkOpen();
+        if (recognizer == null) {
+            recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
+        }
+        return recognizer;
+    }
+
+    //null once closed, for callers that can still run after onDestroy (camera thread)
+    public synchronized TextRecognizer getRecognizerIfOpen() {
+        return closed ? null : getRecognizer();
+    }
+
+    public synchronized LanguageIdentifier getLanguageIdentifier() {
+        checkOpen();
+        if (languageIdentifier == null) {
+            languageIdentifier = LanguageIdentification.getClient();
+        }
+        return languageIdentifier;
+    }
+
+    //background thread only (blocks): creates the clients and runs one recognition on a blank image,
+    //so the first capture doesn't pay for loading the OCR model
+    //Does nothing if the activity was destroyed before the models were ready
+    public void warmUp() {
+        TextRecognizer textRecognizer;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            textRecognizer = getRecognizer();
+            getLanguageIdentifier();
+        }
+        Bitmap blank = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+        try {
+            Tasks.await(textRecognizer.process(InputImage.fromBitmap(blank, 0)));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //warm translator for the pair, created on first use. It stays open until releaseTranslator(),
+    //even if other pairs push it out of the pool meanwhile
+    public synchronized Translator acquireTranslator(String sourceLang, String targetLang) {
+        Translator translator = getTranslator(sourceLang, targetLang);
+        Integer count = users.get(translator);
+        users.put(translator, count == null ? 1 : count + 1);
+        return translator;
+    }
+
+    public synchronized void releaseTranslator(Translator translator) {
+        Integer count = users.get(translator);
+        if (count == null) {
+            return; //closed with the registry
+        }
+        if (count > 1) {
+            users.put(translator, count - 1);
+            return;
+        }
+        users.remove(translator);
+        if (evicted.remove(translator)) {
+            translator.close();
+        }
+    }
+
+    private Translator getTranslator(String sourceLang, String targetLang) {
+        checkOpen();
+        String key = sourceLang + ">" + targetLang;
+        Translator translator = translators.get(key);
+        if (translator == null) {
+            TranslatorOptions options = new TranslatorOptions.Builder()
+                    .setSourceLanguage(sourceLang)
+                    .setTargetLanguage(targetLang)
+                    .build();
+            translator = Translation.getClient(options);
+            translators.put(key, translator);
+        }
+        return translator;
+    }
+
+    //downloads the models of the pair if needed, the translator stays warm in the pool.
+    //It is held while downloading, so a prefetch of other pairs can't close it underneath
+    public synchronized Task<Void> prefetch(String sourceLang, String targetLang) {
+        String key = sourceLang + ">" + targetLang;
+        Translator translator = acquireTranslator(sourceLang, targetLang);
+        return translator.downloadModelIfNeeded()
+                .addOnSuccessListener(v -> markReady(key))
+                .addOnCompleteListener(task -> releaseTranslator(translator));
+    }
+
+    //true = translate() can be called without downloadModelIfNeeded() first
+    public synchronized boolean isModelReady(String sourceLang, String targetLang) {
+        return readyModels.contains(sourceLang + ">" + targetLang);
+    }
+
+    private synchronized void markReady(String key) {
+        readyModels.add(key);
+    }
+
+    //for onDestroy
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Translator translator : translators.values()) {
+            translator.close();
+        }
+        for (Translator translator : evicted) {
+            translator.close();
+        }
+        translators.clear();
+        evicted.clear();
+        users.clear();
+        if (languageIdentifier != null) {
+            languageIdentifier.close();
+        }
+        if (recognizer != null) {
+            recognizer.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("ML Kit clients already closed");
+        }
+    }
+}
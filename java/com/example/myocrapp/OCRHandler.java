@@ -1,142 +1,773 @@
-package com.example.myocrapp;
-
-import android.content.ClipData;
-import android.content.ClipboardManager;
-import android.content.Context;
-import android.text.method.ScrollingMovementMethod;
-import android.widget.Button;
-import android.widget.EditText;
-import android.widget.Toast;
-
-import androidx.appcompat.app.AppCompatActivity;
-
-import com.google.mlkit.nl.languageid.LanguageIdentification;
-import com.google.mlkit.nl.languageid.LanguageIdentifier;
-import com.google.mlkit.nl.translate.Translator;
-import com.google.mlkit.nl.translate.TranslatorOptions;
-import com.google.mlkit.nl.translate.Translation;
-import com.google.mlkit.nl.translate.TranslateLanguage;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.text.TextRecognition;
-import com.google.mlkit.vision.text.TextRecognizer;
-import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
-
-
-
-/**
- * Class responsibility:
- * Performing OCR (text recognition) on a bitmap
- * Displaying recognized text in the UI
- * Copying recognized text to the clipboard
- * Translates recognized text into another language
- */
-public class OCRHandler {
-
-    private final AppCompatActivity activity; //context for ui, dialog, toasts
-    private final EditText resultText; //output text for recognized and translated text
-    private final Button copyTextBtn; //copy button in ui
-    private final Button translateBtn; //translate button in ui
-
-    public OCRHandler(AppCompatActivity activity, EditText resultText, Button copyTextBtn, Button translateBtn) {
-        this.activity = activity;
-        this.resultText = resultText;
-        this.copyTextBtn = copyTextBtn;
-        this.translateBtn = translateBtn;
-
-        // only visible after image capture
-        copyTextBtn.setVisibility(Button.GONE);
-        translateBtn.setVisibility(Button.GONE);
-        // Attach click listeners to buttons
-        setupButtons();
-    }
-    //Configure buttons
-    private void setupButtons() {
-        copyTextBtn.setOnClickListener(v -> {
-            String textToCopy = resultText.getText().toString(); // immer aktuellen Text nehmen
-            ClipboardManager cb = (ClipboardManager) activity.getSystemService(Context.CLIPBOARD_SERVICE);
-            cb.setPrimaryClip(ClipData.newPlainText("ocr", textToCopy));
-            Toast.makeText(activity, "Copied", Toast.LENGTH_SHORT).show();
-        });
-
-        translateBtn.setOnClickListener(v -> {
-            String text = resultText.getText().toString(); // aktuellen Text nehmen
-            showLanguageOptions(text);
-        });
-    }
-
-
-     //Performs Optical Character Recognition (OCR) on a bitmap
-    // bitmap= 2D array of pixels [R,G,B,A]
-    public void recognizeText(android.graphics.Bitmap bitmap) {
-
-        //convert bitmap to inputimage
-        InputImage image = InputImage.fromBitmap(bitmap, 0);
-        //ML KIT textt recognizer
-        TextRecognizer recognizer = TextRecognition.getClient(TextRecognizerOptions.DEFAULT_OPTIONS);
-
-        recognizer.process(image)
-                .addOnSuccessListener(text -> {
-                    resultText.setText(text.getText()); //display recognized text
-                    resultText.setMovementMethod(new ScrollingMovementMethod());
-                    //activate copy and translate button
-                    copyTextBtn.setVisibility(Button.VISIBLE);
-                    translateBtn.setVisibility(Button.VISIBLE);
-                })
-                .addOnFailureListener(e -> Toast.makeText(activity, "Text recognition failed", Toast.LENGTH_SHORT).show());
-    }
-
-    //show laanguages in the ui and call translateDynamic
-    private void showLanguageOptions(String text) {
-        String[] langs = {"English", "German", "French", "Spanish", "Polish", "Chinese", "Hindi"};
-
-        new androidx.appcompat.app.AlertDialog.Builder(activity)
-                .setTitle("Translate to")
-                .setItems(langs, (dialog, which) ->
-                        translateDynamic(text, getLangCode(langs[which])))
-                .show();
-    }
-
-    //set languages to translate
-    private String getLangCode(String lang) {
-        switch (lang) {
-            case "German": return TranslateLanguage.GERMAN;
-            case "French": return TranslateLanguage.FRENCH;
-            case "Spanish": return TranslateLanguage.SPANISH;
-            case "Polish": return TranslateLanguage.POLISH;
-            case "Chinese": return TranslateLanguage.CHINESE;
-            case "Hindi": return TranslateLanguage.HINDI;
-            default: return TranslateLanguage.ENGLISH;
-        }
-    }
-    //Detects the source language automatically and translates text
-    private void translateDynamic(String text, String targetLang) {
-
-        //ML KIT
-        LanguageIdentifier id = LanguageIdentification.getClient();
-        id.identifyLanguage(text)
-                .addOnSuccessListener(src -> {
-                    //und = undetermined language. if language found returns: "en", "pl"... and gets passed into translatorOptions
-                    if ("und".equals(src)) {
-                        Toast.makeText(activity, "Language not detected. Please check the spelling and write multiple words", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    //Toast.makeText(activity, "Language found", Toast.LENGTH_SHORT).show();
-                    //Configure detected source + target language for translator
-                    TranslatorOptions options = new TranslatorOptions.Builder()
-                            .setSourceLanguage(src)
-                            .setTargetLanguage(targetLang)
-                            .build();
-
-                    //ML Kit translator
-                    Translator translator = Translation.getClient(options);
-                    translator.downloadModelIfNeeded()
-                            .addOnSuccessListener(v ->
-                                    translator.translate(text)
-                                            .addOnSuccessListener(translatedText ->
-                                                    //output text in ui
-                                                    resultText.setText(translatedText)
-                                            ));
-                });
-    }
-}
+package com.example.myocrapp;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.text.InputType;
+import android.text.TextUtils;
+import android.text.method.ScrollingMovementMethod;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.myocrapp.core.CropRegion;
+import com.example.myocrapp.core.LatencyStats;
+import com.example.myocrapp.core.OcrHistoryStore;
+import com.example.myocrapp.core.OcrPreprocessor;
+import com.example.myocrapp.core.OcrResultCache;
+import com.example.myocrapp.core.PipelineMetrics;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.nl.languageid.LanguageIdentifier;
+import com.google.mlkit.nl.translate.Translator;
+import com.google.mlkit.nl.translate.TranslateLanguage;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.text.Text;
+import com.google.mlkit.vision.text.TextRecognizer;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+
+/**
+ * Class responsibility:
+ * Performing OCR (text recognition) on a bitmap
+ * Displaying recognized text in the UI
+ * Copying recognized text to the clipboard
+ * Translates recognized text into another language
+ */
+public class OCRHandler {
+
+    //main thread, a stored capture from the history should be recognized again
+    public interface CaptureReopenListener {
+        void onReopenCapture(File captureFile);
+    }
+
+    private static final int MAX_OCR_PIXELS = 3_000_000; //plenty for document text, 12 MP captures get scaled down
+    private static final float REGION_MARGIN = 0.05f; //text often touches the detected box edge
+    private static final int MAX_TRANSLATIONS_IN_FLIGHT = 4; //lines sent to the translator at the same time
+    private static final int LANGUAGE_SAMPLE_CHARS = 500; //enough for language id, long documents are not scanned
+    private static final int OCR_CACHE_ENTRIES = 16; //recent captures whose text is kept
+    private static final int MAX_HASH_DISTANCE = 6; //of 64 bits, same page photographed again is usually 0-4
+    private static final int PREFETCH_TARGETS = 2; //most-used target languages kept warm, pool holds 3 translators
+    private static final int HISTORY_RESULTS = 50; //newest matches shown in the search dialog
+    private static final int PREPROCESS_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final AppCompatActivity activity; //context for ui, dialog, toasts
+    private final EditText resultText; //output text for recognized and translated text
+    private final Button copyTextBtn; //copy button in ui
+    private final Button translateBtn; //translate button in ui
+    private final MlKitClientRegistry clients = new MlKitClientRegistry(); //recognizer, language id and translators, reused
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(); //cache file io, off the ui thread
+    private final TranslationCache translationCache; //translated lines, survives restarts
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+    private final SharedPreferences targetUsage; //how often each target language was picked
+    private final OcrResultCache<Text> ocrCache = new OcrResultCache<>(OCR_CACHE_ENTRIES, MAX_HASH_DISTANCE); //by perceptual hash
+    private final ExecutorService preprocessExecutor = Executors.newFixedThreadPool(PREPROCESS_THREADS); //image stripes
+    private final OcrPreprocessor preprocessor = new OcrPreprocessor(preprocessExecutor, PREPROCESS_THREADS); //guarded by itself
+    private final OcrHistoryStore history; //every OCR result, searchable, only touched on diskExecutor
+    private final OcrQuality rawQuality = new OcrQuality("ocr raw");
+    private final OcrQuality preprocessedQuality = new OcrQuality("ocr preprocessed");
+
+    private Text lastText; //last OCR result, its blocks are the translation units
+    private int translationGeneration; //main thread only, bumped to cancel a running translation
+    private String identifiedText; //text the language id below belongs to
+    private Task<String> identifiedLanguage; //source language of identifiedText, may still be running
+    private String historyKey; //main thread, history entry of the shown text, null = live or cached text
+    private long lastHistoryId; //main thread, results without an archived capture get unique ids
+    private String historyText; //text of that entry, translations of other (edited) text are not stored
+    private CaptureReopenListener reopenListener;
+    private volatile boolean preprocessingEnabled; //grayscale, deskew, binarize before recognition (tools menu)
+    private int[] preprocessPixels = new int[0]; //guarded by preprocessor, only grows
+    private Bitmap preprocessBitmap; //guarded by preprocessor, only grows, reused once ML Kit is done with it
+    private boolean preprocessBitmapBusy; //guarded by preprocessor, preprocessBitmap is being recognized
+
+    public OCRHandler(AppCompatActivity activity, EditText resultText, Button copyTextBtn, Button translateBtn) {
+        this.activity = activity;
+        this.resultText = resultText;
+        this.copyTextBtn = copyTextBtn;
+        this.translateBtn = translateBtn;
+
+        translationCache = new TranslationCache(new File(activity.getFilesDir(), "translation_cache.bin"), 2000, diskExecutor);
+        diskExecutor.execute(translationCache::load);
+        history = new OcrHistoryStore(new File(activity.getFilesDir(), "ocr_history.bin"));
+        diskExecutor.execute(history::load);
+        targetUsage = activity.getSharedPreferences("translation_targets", Context.MODE_PRIVATE);
+
+        // only visible after image capture
+        copyTextBtn.setVisibility(Button.GONE);
+        translateBtn.setVisibility(Button.GONE);
+        // Attach click listeners to buttons
+        setupButtons();
+    }
+    //Configure buttons
+    private void setupButtons() {
+        copyTextBtn.setOnClickListener(v -> {
+            String textToCopy = resultText.getText().toString(); // immer aktuellen Text nehmen
+            ClipboardManager cb = (ClipboardManager) activity.getSystemService(Context.CLIPBOARD_SERVICE);
+            cb.setPrimaryClip(ClipData.newPlainText("ocr", textToCopy));
+            Toast.makeText(activity, "Copied", Toast.LENGTH_SHORT).show();
+        });
+
+        translateBtn.setOnClickListener(v -> {
+            String text = resultText.getText().toString(); // aktuellen Text nehmen
+            showLanguageOptions(text);
+        });
+    }
+
+
+     //Performs Optical Character Recognition (OCR) on a bitmap
+    // bitmap= 2D array of pixels [R,G,B,A]
+    public void recognizeText(Bitmap bitmap) {
+        recognizeText(bitmap, null);
+    }
+
+    //OCR only inside region (detected document, image coordinates), whole bitmap if region is null
+    public void recognizeText(Bitmap bitmap, @Nullable RectF region) {
+        recognizeText(bitmap, region, null);
+    }
+
+    //onDone runs on the main thread once the text is shown (or recognition failed), e.g. to measure tap-to-text
+    public void recognizeText(Bitmap bitmap, @Nullable RectF region, @Nullable Runnable onDone) {
+        recognizeText(bitmap, region, null, null, onDone);
+    }
+
+    //captureHash: perceptual hash of the capture, the result is cached under it (see showCached)
+    //captureFile: archived image of the capture, kept with the text in the history (null = not archived)
+    public void recognizeText(Bitmap bitmap, @Nullable RectF region, @Nullable Long captureHash,
+                              @Nullable File captureFile, @Nullable Runnable onDone) {
+        //new capture, a running translation belongs to the old text (may be called from a worker thread)
+        activity.runOnUiThread(this::cancelTranslation);
+
+        long ocrStart = System.nanoTime(); //includes preprocessing, that is what the user waits for
+        Bitmap input = cropForOcr(bitmap, region);
+        boolean preprocessed = preprocessingEnabled;
+        if (preprocessed) {
+            input = preprocess(input);
+        }
+        OcrQuality quality = preprocessed ? preprocessedQuality : rawQuality;
+        Bitmap ocrInput = input;
+        //convert bitmap to inputimage
+        InputImage image = InputImage.fromBitmap(input, 0);
+        //ML KIT textt recognizer, created once
+        TextRecognizer recognizer = clients.getRecognizer();
+
+        recognizer.process(image)
+                .addOnSuccessListener(text -> {
+                    metrics.recordSince(PipelineMetrics.Stage.OCR, ocrStart);
+                    quality.record((System.nanoTime() - ocrStart) / 1_000_000L, text);
+                    if (captureHash != null) {
+                        ocrCache.put(captureHash, text);
+                    }
+                    showText(text);
+                    addToHistory(text.getText(), captureFile);
+                })
+                .addOnFailureListener(e -> Toast.makeText(activity, "Text recognition failed", Toast.LENGTH_SHORT).show())
+                .addOnCompleteListener(task -> {
+                    releasePreprocessed(ocrInput);
+                    if (onDone != null) {
+                        onDone.run();
+                    }
+                });
+    }
+
+    //repeated capture of the same page: shows the earlier text and returns true, any thread.
+    //false = nothing similar cached, run alignment and recognizeText as usual
+    public boolean showCached(long captureHash, @Nullable Runnable onDone) {
+        Text cached = ocrCache.find(captureHash);
+        if (cached == null) {
+            return false;
+        }
+        activity.runOnUiThread(() -> {
+            cancelTranslation();
+            showText(cached);
+            historyKey = null; //already in the history from the first capture
+            Toast.makeText(activity, "Same page, text from cache", Toast.LENGTH_SHORT).show();
+            if (onDone != null) {
+                onDone.run();
+            }
+        });
+        return true;
+    }
+
+    //main thread
+    private void showText(Text text) {
+        lastText = text;
+        resultText.setText(text.getText()); //display recognized text
+        resultText.setMovementMethod(new ScrollingMovementMethod());
+        //activate copy and translate button
+        copyTextBtn.setVisibility(Button.VISIBLE);
+        translateBtn.setVisibility(Button.VISIBLE);
+        //language and models are ready before the user taps translate
+        identifySource(text.getText());
+    }
+
+    //live OCR shares the recognizer, results go to the same text field
+    public LiveTextRecognizer createLiveTextRecognizer(LiveTextRecognizer.Listener listener) {
+        return new LiveTextRecognizer(clients, listener);
+    }
+
+    //batch OCR of stored images, also on the shared recognizer
+    public BatchOcrRunner createBatchOcrRunner(List<File> inputs, File output, File checkpoint, int workers,
+                                               BatchOcrRunner.Listener listener) {
+        return new BatchOcrRunner(clients.getRecognizer(), inputs, output, checkpoint, workers, listener);
+    }
+
+    //main thread, stabilized text from live mode
+    public void showLiveText(String text) {
+        cancelTranslation();
+        lastText = null;
+        historyKey = null;
+        resultText.setText(text);
+        if (!text.isEmpty()) {
+            copyTextBtn.setVisibility(Button.VISIBLE);
+            translateBtn.setVisibility(Button.VISIBLE);
+        }
+    }
+
+    //crop to the region and scale down to the OCR pixel budget, one bitmap allocation at most
+    static Bitmap cropForOcr(Bitmap bitmap, @Nullable RectF region) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        CropRegion crop = region == null
+                ? CropRegion.fullFrame(width, height, MAX_OCR_PIXELS)
+                : CropRegion.fromImageBox(region.left, region.top, region.right, region.bottom,
+                        width, height, REGION_MARGIN, MAX_OCR_PIXELS);
+
+        if (crop.isFullFrame(width, height) && crop.scale == 1f) {
+            return bitmap;
+        }
+        Matrix m = new Matrix();
+        m.postScale(crop.scale, crop.scale);
+        Bitmap cropped = Bitmap.createBitmap(bitmap, crop.left, crop.top, crop.width, crop.height, m, true);
+        PipelineMetrics.get().countAllocation(cropped.getAllocationByteCount());
+        return cropped;
+    }
+
+    //runs on the calling thread (capture stage), the stripes on preprocessExecutor.
+    //Pixel buffer and output bitmap are reused, a new bitmap only while the last one is still being recognized
+    private Bitmap preprocess(Bitmap bitmap) {
+        long start = System.nanoTime();
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = width * height;
+        Bitmap out;
+        synchronized (preprocessor) {
+            if (preprocessPixels.length < size) {
+                preprocessPixels = new int[size];
+                metrics.countAllocation(4L * size);
+            }
+            bitmap.getPixels(preprocessPixels, 0, width, 0, 0, width, height);
+            int[] bw = preprocessor.process(preprocessPixels, width, height);
+            if (preprocessBitmapBusy) {
+                out = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                metrics.countAllocation(out.getAllocationByteCount());
+            } else {
+                if (preprocessBitmap == null || preprocessBitmap.getAllocationByteCount() < 4L * size) {
+                    preprocessBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    metrics.countAllocation(preprocessBitmap.getAllocationByteCount());
+                } else {
+                    preprocessBitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888); //same memory, new size
+                }
+                preprocessBitmapBusy = true;
+                out = preprocessBitmap;
+            }
+            out.setPixels(bw, 0, width, 0, 0, width, height);
+        }
+        metrics.recordSince(PipelineMetrics.Stage.OCR_PREPROCESS, start);
+        return out;
+    }
+
+    //recognition of bitmap finished, the reused preprocessing output may be written again
+    private void releasePreprocessed(Bitmap bitmap) {
+        synchronized (preprocessor) {
+            if (bitmap == preprocessBitmap) {
+                preprocessBitmapBusy = false;
+            }
+        }
+    }
+
+    public void setPreprocessingEnabled(boolean enabled) {
+        preprocessingEnabled = enabled;
+    }
+
+    public boolean isPreprocessingEnabled() {
+        return preprocessingEnabled;
+    }
+
+    //recognition time and line confidence with and without preprocessing, to decide whether it pays off
+    public String preprocessingSummary() {
+        return rawQuality.summary() + "\n" + preprocessedQuality.summary();
+    }
+
+    //main thread, new OCR result: stored and indexed on the disk thread, language added once identified.
+    //Keyed by the capture file, so recognizing a reopened capture again replaces its entry
+    private void addToHistory(String text, @Nullable File captureFile) {
+        long now = System.currentTimeMillis();
+        String path = captureFile == null ? "" : captureFile.getAbsolutePath();
+        String key;
+        if (captureFile != null) {
+            key = path;
+        } else {
+            lastHistoryId = Math.max(now, lastHistoryId + 1); //two results in one millisecond stay apart
+            key = "ocr:" + lastHistoryId;
+        }
+        historyKey = key;
+        historyText = text;
+        diskExecutor.execute(() -> history.put(key, now, path, text));
+        identifySource(text).addOnSuccessListener(src -> {
+            if (!"und".equals(src)) {
+                diskExecutor.execute(() -> history.setLanguage(key, src));
+            }
+        });
+    }
+
+    //search dialog (tools menu): all words have to match, newest results first, tap shows the text again
+    public void showHistorySearch() {
+        EditText input = new EditText(activity);
+        input.setInputType(InputType.TYPE_CLASS_TEXT);
+        input.setHint("Words in the text or a translation");
+        new androidx.appcompat.app.AlertDialog.Builder(activity)
+                .setTitle("Search OCR history")
+                .setView(input)
+                .setPositiveButton("Search", (dialog, which) -> {
+                    String query = input.getText().toString();
+                    diskExecutor.execute(() -> {
+                        long start = System.nanoTime();
+                        List<OcrHistoryStore.Entry> results = history.search(query, HISTORY_RESULTS);
+                        String title = String.format(Locale.US, "%d results (%d us, %s)", results.size(),
+                                (System.nanoTime() - start) / 1000, history.summary());
+                        activity.runOnUiThread(() -> showHistoryResults(results, title));
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void showHistoryResults(List<OcrHistoryStore.Entry> results, String title) {
+        if (results.isEmpty()) {
+            Toast.makeText(activity, title, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+        String[] items = new String[results.size()];
+        for (int i = 0; i < items.length; i++) {
+            OcrHistoryStore.Entry entry = results.get(i);
+            String firstLine = entry.getText().trim().split("\n", 2)[0];
+            if (firstLine.length() > 60) {
+                firstLine = firstLine.substring(0, 60) + "...";
+            }
+            String language = entry.getLanguage().isEmpty() ? "" : " " + entry.getLanguage();
+            items[i] = format.format(new Date(entry.getTimestampMs())) + language + "\n" + firstLine;
+        }
+        new androidx.appcompat.app.AlertDialog.Builder(activity)
+                .setTitle(title)
+                .setItems(items, (dialog, which) -> openHistoryEntry(results.get(which)))
+                .show();
+    }
+
+    //text only, or the capture again if it is still stored
+    private void openHistoryEntry(OcrHistoryStore.Entry entry) {
+        String captureFile = entry.getCaptureFile();
+        File capture = captureFile.isEmpty() ? null : new File(captureFile);
+        if (reopenListener == null || capture == null || !capture.exists()) {
+            showHistoryEntry(entry);
+            return;
+        }
+        new androidx.appcompat.app.AlertDialog.Builder(activity)
+                .setItems(new String[]{"Show text", "OCR the capture again"}, (dialog, which) -> {
+                    if (which == 0) {
+                        showHistoryEntry(entry);
+                    } else {
+                        reopenListener.onReopenCapture(capture);
+                    }
+                })
+                .show();
+    }
+
+    public void setCaptureReopenListener(CaptureReopenListener listener) {
+        reopenListener = listener;
+    }
+
+    //main thread, an old result back in the text field, translating it again adds to the same entry
+    private void showHistoryEntry(OcrHistoryStore.Entry entry) {
+        cancelTranslation();
+        lastText = null;
+        String text = entry.getText();
+        String captureFile = entry.getCaptureFile();
+        historyKey = entry.key;
+        historyText = text;
+        resultText.setText(text);
+        resultText.setMovementMethod(new ScrollingMovementMethod());
+        copyTextBtn.setVisibility(Button.VISIBLE);
+        translateBtn.setVisibility(Button.VISIBLE);
+        identifySource(text);
+        if (!captureFile.isEmpty() && !new File(captureFile).exists()) {
+            Toast.makeText(activity, "Capture image no longer stored", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    //show laanguages in the ui and call translateDynamic
+    private void showLanguageOptions(String text) {
+        String[] langs = {"English", "German", "French", "Spanish", "Polish", "Chinese", "Hindi"};
+
+        new androidx.appcompat.app.AlertDialog.Builder(activity)
+                .setTitle("Translate to")
+                .setItems(langs, (dialog, which) -> {
+                    String code = getLangCode(langs[which]);
+                    targetUsage.edit().putInt(code, targetUsage.getInt(code, 0) + 1).apply();
+                    translateDynamic(text, code);
+                })
+                .show();
+    }
+
+    //target languages by how often they were picked, most used first
+    private List<String> mostUsedTargets(int max) {
+        List<Map.Entry<String, ?>> entries = new ArrayList<>(targetUsage.getAll().entrySet());
+        Collections.sort(entries, (a, b) -> Integer.compare((Integer) b.getValue(), (Integer) a.getValue()));
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < max; i++) {
+            targets.add(entries.get(i).getKey());
+        }
+        return targets;
+    }
+
+    //set languages to translate
+    private String getLangCode(String lang) {
+        switch (lang) {
+            case "German": return TranslateLanguage.GERMAN;
+            case "French": return TranslateLanguage.FRENCH;
+            case "Spanish": return TranslateLanguage.SPANISH;
+            case "Polish": return TranslateLanguage.POLISH;
+            case "Chinese": return TranslateLanguage.CHINESE;
+            case "Hindi": return TranslateLanguage.HINDI;
+            default: return TranslateLanguage.ENGLISH;
+        }
+    }
+    //Detects the source language automatically and translates text
+    private void translateDynamic(String text, String targetLang) {
+        //picking another language cancels the running translation
+        int generation = cancelTranslation();
+        long pickedAt = System.nanoTime();
+        List<String[]> blocks = blocksOf(text);
+        String key = text.equals(historyText) ? historyKey : null;
+
+        //usually already identified after OCR, then this is immediate
+        identifySource(text)
+                .addOnSuccessListener(src -> {
+                    if (generation != translationGeneration) {
+                        return;
+                    }
+                    //und = undetermined language. if language found returns: "en", "pl"... and gets passed into translatorOptions
+                    if ("und".equals(src)) {
+                        Toast.makeText(activity, "Language not detected. Please check the spelling and write multiple words", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+
+                    //ML Kit translator for detected source + target language, stays warm in the pool.
+                    //The translation holds it until its last line is back
+                    if (clients.isModelReady(src, targetLang)) {
+                        new BlockTranslation(clients.acquireTranslator(src, targetLang), blocks, src, targetLang,
+                                generation, pickedAt, key).start();
+                        return;
+                    }
+                    clients.prefetch(src, targetLang)
+                            .addOnSuccessListener(v -> {
+                                if (generation == translationGeneration) {
+                                    new BlockTranslation(clients.acquireTranslator(src, targetLang), blocks, src, targetLang,
+                                            generation, pickedAt, key).start();
+                                }
+                            })
+                            .addOnFailureListener(e -> Toast.makeText(activity, "Translation model not available", Toast.LENGTH_SHORT).show());
+                });
+    }
+
+    //language id once per text, on a sample of it. A detected language prefetches the models of the most-used targets
+    private Task<String> identifySource(String text) {
+        boolean failed = identifiedLanguage != null && identifiedLanguage.isComplete() && !identifiedLanguage.isSuccessful();
+        if (text.equals(identifiedText) && !failed) {
+            return identifiedLanguage;
+        }
+        identifiedText = text;
+        //ML KIT
+        LanguageIdentifier id = clients.getLanguageIdentifier();
+        long languageIdStart = System.nanoTime();
+        identifiedLanguage = id.identifyLanguage(languageSample(text))
+                .addOnSuccessListener(src -> {
+                    metrics.recordSince(PipelineMetrics.Stage.LANGUAGE_ID, languageIdStart);
+                    if ("und".equals(src)) {
+                        return;
+                    }
+                    for (String target : mostUsedTargets(PREFETCH_TARGETS)) {
+                        if (!target.equals(src)) {
+                            clients.prefetch(src, target);
+                        }
+                    }
+                });
+        return identifiedLanguage;
+    }
+
+    //first LANGUAGE_SAMPLE_CHARS characters, cut at a word boundary
+    static String languageSample(String text) {
+        if (text.length() <= LANGUAGE_SAMPLE_CHARS) {
+            return text;
+        }
+        int end = LANGUAGE_SAMPLE_CHARS;
+        while (end > LANGUAGE_SAMPLE_CHARS / 2 && !Character.isWhitespace(text.charAt(end))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    //lifecycle (onPause), main thread: a running translation stops dispatching lines
+    public void cancelPendingWork() {
+        cancelTranslation();
+    }
+
+    //invalidates callbacks of the running translation, returns the generation of the next one
+    private int cancelTranslation() {
+        return ++translationGeneration;
+    }
+
+    //blocks (lines of one paragraph) in reading order. ML Kit's blocks if the text is still the OCR result,
+    //otherwise (edited or live text) paragraphs separated by empty lines
+    private List<String[]> blocksOf(String text) {
+        List<String[]> blocks = new ArrayList<>();
+        if (lastText != null && lastText.getText().equals(text)) {
+            for (Text.TextBlock block : lastText.getTextBlocks()) {
+                List<Text.Line> lines = block.getLines();
+                String[] texts = new String[lines.size()];
+                for (int i = 0; i < texts.length; i++) {
+                    texts[i] = lines.get(i).getText();
+                }
+                blocks.add(texts);
+            }
+            return blocks;
+        }
+        List<String> paragraph = new ArrayList<>();
+        for (String line : TranslationCache.splitSegments(text)) {
+            paragraph.add(line);
+            if (TranslationCache.normalize(line).isEmpty()) {
+                blocks.add(paragraph.toArray(new String[0])); //empty line stays at the end of its paragraph
+                paragraph.clear();
+            }
+        }
+        if (!paragraph.isEmpty()) {
+            blocks.add(paragraph.toArray(new String[0]));
+        }
+        return blocks;
+    }
+
+    /**
+     * One translation run, main thread only.
+     * Lines missing in the cache go to the translator, at most MAX_TRANSLATIONS_IN_FLIGHT at once and
+     * in reading order. The output is redrawn whenever a block is complete: finished blocks from the top
+     * are shown translated, the rest still in the original. A newer generation drops all further results.
+     * The translator is acquired from the registry by the caller and released once no line is in flight anymore.
+     */
+    private class BlockTranslation {
+        private final Translator translator;
+        private final String src;
+        private final String targetLang;
+        private final int generation;
+        private final long pickedAt;
+        private final String historyKey; //null = not stored
+        private final long translationStart = System.nanoTime();
+
+        private final String[] lines;
+        private final String[] translated;
+        private final int[] blockOfLine;
+        private final int[] missingPerBlock;
+        private final Map<String, List<Integer>> linesBySegment = new LinkedHashMap<>(); //same line twice = one translation
+        private final ArrayDeque<String> queue = new ArrayDeque<>();
+        private int inFlight;
+        private int shownBlocks = -1;
+        private boolean released;
+
+        BlockTranslation(Translator translator, List<String[]> blocks, String src, String targetLang,
+                         int generation, long pickedAt, String historyKey) {
+            this.translator = translator;
+            this.src = src;
+            this.targetLang = targetLang;
+            this.generation = generation;
+            this.pickedAt = pickedAt;
+            this.historyKey = historyKey;
+
+            int count = 0;
+            for (String[] block : blocks) {
+                count += block.length;
+            }
+            lines = new String[count];
+            translated = new String[count];
+            blockOfLine = new int[count];
+            missingPerBlock = new int[blocks.size()];
+
+            int i = 0;
+            for (int b = 0; b < blocks.size(); b++) {
+                for (String line : blocks.get(b)) {
+                    lines[i] = line;
+                    blockOfLine[i] = b;
+                    String segment = TranslationCache.normalize(line);
+                    if (segment.isEmpty()) {
+                        translated[i] = line; //keep empty lines as paragraph breaks
+                    } else {
+                        String cached = translationCache.get(segment, src, targetLang);
+                        if (cached != null) {
+                            translated[i] = cached;
+                        } else {
+                            missingPerBlock[b]++;
+                            List<Integer> same = linesBySegment.get(segment);
+                            if (same == null) {
+                                same = new ArrayList<>();
+                                linesBySegment.put(segment, same);
+                                queue.add(segment);
+                            }
+                            same.add(i);
+                        }
+                    }
+                    i++;
+                }
+            }
+        }
+
+        void start() {
+            render(); //cached blocks show up right away
+            dispatch();
+        }
+
+        private void dispatch() {
+            while (inFlight < MAX_TRANSLATIONS_IN_FLIGHT && !queue.isEmpty()) {
+                String segment = queue.poll();
+                inFlight++;
+                translator.translate(segment).addOnCompleteListener(task -> {
+                    inFlight--;
+                    if (generation != translationGeneration) {
+                        //cancelled, nothing more is dispatched
+                        if (inFlight == 0) {
+                            release();
+                        }
+                        return;
+                    }
+                    String result = segment; //failed line stays untranslated
+                    if (task.isSuccessful()) {
+                        result = task.getResult();
+                        translationCache.put(segment, src, targetLang, result);
+                    }
+                    for (int line : linesBySegment.get(segment)) {
+                        translated[line] = result;
+                        missingPerBlock[blockOfLine[line]]--;
+                    }
+                    render();
+                    dispatch();
+                });
+            }
+            if (inFlight == 0 && queue.isEmpty()) {
+                release(); //all lines done (or all cached)
+            }
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                clients.releaseTranslator(translator);
+            }
+        }
+
+        //translated prefix of complete blocks + original rest, only redrawn when the prefix grows
+        private void render() {
+            int done = 0;
+            while (done < missingPerBlock.length && missingPerBlock[done] == 0) {
+                done++;
+            }
+            if (done == shownBlocks) {
+                return;
+            }
+            if (shownBlocks <= 0 && done > 0) {
+                metrics.recordSince(PipelineMetrics.Stage.FIRST_TRANSLATION, pickedAt);
+            }
+            shownBlocks = done;
+
+            String[] output = Arrays.copyOf(lines, lines.length);
+            for (int i = 0; i < lines.length && blockOfLine[i] < done; i++) {
+                output[i] = translated[i];
+            }
+            //output text in ui
+            String shown = TextUtils.join("\n", output);
+            resultText.setText(shown);
+            if (done == missingPerBlock.length) {
+                metrics.recordSince(PipelineMetrics.Stage.TRANSLATION, translationStart);
+                if (historyKey != null) {
+                    diskExecutor.execute(() -> history.putTranslation(historyKey, targetLang, shown));
+                }
+            }
+        }
+    }
+
+    //background thread, see MlKitClientRegistry.warmUp()
+    public void warmUp() {
+        clients.warmUp();
+    }
+
+    public TranslationCache getTranslationCache() {
+        return translationCache;
+    }
+
+    //for onDestroy, releases the native ML Kit resources
+    public void close() {
+        clients.close();
+        translationCache.close();
+        diskExecutor.execute(history::close);
+        diskExecutor.shutdown();
+        preprocessExecutor.shutdown();
+    }
+
+    //latency plus mean ML Kit line confidence of one OCR mode
+    private static class OcrQuality {
+        private final LatencyStats latency;
+        private double confidenceSum;
+        private long lines;
+        private long chars;
+
+        OcrQuality(String name) {
+            latency = new LatencyStats(name);
+        }
+
+        synchronized void record(long latencyMs, Text text) {
+            latency.record(latencyMs);
+            for (Text.TextBlock block : text.getTextBlocks()) {
+                for (Text.Line line : block.getLines()) {
+                    confidenceSum += line.getConfidence();
+                    lines++;
+                }
+            }
+            chars += text.getText().length();
+        }
+
+        synchronized String summary() {
+            long count = latency.getCount();
+            if (count == 0) {
+                return latency.summary();
+            }
+            return String.format(Locale.US, "%s | confidence %.2f | %d chars/capture", latency.summary(),
+                    lines == 0 ? 0.0 : confidenceSum / lines, chars / count);
+        }
+    }
+}
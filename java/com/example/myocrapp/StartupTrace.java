@@ -0,0 +1,61 @@
+package com.example.myocrapp;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Class responsibility:
+ * Cold start milestones measured from process start: first preview frame, models ready, first detection
+ * Each milestone is recorded once, later calls are ignored
+ *
+ * Thread-safe, milestones come from the main thread and the model initializer.
+ */
+public class StartupTrace {
+
+    public enum Milestone {
+        ACTIVITY_CREATED,
+        FIRST_PREVIEW,
+        MODELS_READY,
+        FIRST_DETECTION
+    }
+
+    private final long processStartMs = Process.getStartUptimeMillis();
+    private final long[] elapsedMs = new long[Milestone.values().length];
+
+    public StartupTrace() {
+        Arrays.fill(elapsedMs, -1);
+    }
+
+    public synchronized void mark(Milestone milestone) {
+        if (elapsedMs[milestone.ordinal()] < 0) {
+            elapsedMs[milestone.ordinal()] = SystemClock.uptimeMillis() - processStartMs;
+        }
+    }
+
+    //-1 while not reached
+    public synchronized long getElapsedMs(Milestone milestone) {
+        return elapsedMs[milestone.ordinal()];
+    }
+
+    public synchronized boolean isComplete() {
+        for (long ms : elapsedMs) {
+            if (ms < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("startup");
+        for (Milestone milestone : Milestone.values()) {
+            long ms = elapsedMs[milestone.ordinal()];
+            sb.append(String.format(Locale.US, " | %s %s", milestone.name().toLowerCase(Locale.US).replace('_', ' '),
+                    ms < 0 ? "-" : ms + " ms"));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.myocrapp;
+
+import com.example.myocrapp.core.LogInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Class responsibility:
+ * Caching translations per text segment (line), keyed by (normalized segment hash, source, target)
+ * Bounded in memory with LRU eviction
+ * Persisted as an append-only binary log so it survives restarts, compacted when it grows too much
+ * Hit/miss statistics
+ *
+ * Plain Java. Disk writes run on the executor passed in, load() blocks and belongs on a background thread.
+ * The lock on the cache only guards the map and the statistics, get() never waits for the file.
+ */
+public class TranslationCache {
+
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_SEGMENT_CHARS = 8000; //writeUTF is limited to 64 KB, long segments are not worth caching anyway
+
+    private final File file;
+    private final Executor diskExecutor;
+    private final int maxEntries;
+    private final LinkedHashMap<String, String> entries;
+
+    private final Object logLock = new Object(); //log and logRecords, held for file io
+    private DataOutputStream log; //opened lazily by the disk executor
+    private int logRecords;
+    private long hits;
+    private long misses;
+
+    public TranslationCache(File file, int maxEntries, Executor diskExecutor) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.diskExecutor = diskExecutor;
+        this.entries = new LinkedHashMap<String, String>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TranslationCache.this.maxEntries;
+            }
+        };
+    }
+
+    //reads the log written by earlier runs, later records win. A torn tail (crash while writing) is cut off
+    //so new records don't land behind it; a log of another version is started over
+    public void load() {
+        if (!file.exists()) {
+            return;
+        }
+        int records = 0;
+        long validLength = 0;
+        try (LogInputStream in = new LogInputStream(file)) {
+            if (in.remaining() >= 4 && in.readInt() == FILE_VERSION) {
+                validLength = in.position();
+                while (in.remaining() > 0) {
+                    String key;
+                    String translation;
+                    try {
+                        key = in.readUTF();
+                        translation = in.readUTF();
+                    } catch (IOException end) {
+                        break; //EOFException: record cut off, others: garbage
+                    }
+                    synchronized (this) {
+                        entries.put(key, translation);
+                    }
+                    records++;
+                    validLength = in.position();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        synchronized (logLock) {
+            logRecords = records;
+            if (validLength < file.length()) {
+                try {
+                    LogInputStream.truncate(file, validLength);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public synchronized String get(String segment, String sourceLang, String targetLang) {
+        String translation = entries.get(key(segment, sourceLang, targetLang));
+        if (translation != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return translation;
+    }
+
+    public void put(String segment, String sourceLang, String targetLang, String translation) {
+        if (translation.length() > MAX_SEGMENT_CHARS || segment.length() > MAX_SEGMENT_CHARS) {
+            return;
+        }
+        String key = key(segment, sourceLang, targetLang);
+        synchronized (this) {
+            entries.put(key, translation);
+        }
+        diskExecutor.execute(() -> append(key, translation));
+    }
+
+    //disk executor
+    private void append(String key, String translation) {
+        synchronized (logLock) {
+            try {
+                if (log == null) {
+                    boolean fresh = !file.exists() || file.length() == 0;
+                    log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+                    if (fresh) {
+                        log.writeInt(FILE_VERSION);
+                    }
+                }
+                log.writeUTF(key);
+                log.writeUTF(translation);
+                log.flush();
+                logRecords++;
+
+                //the log also holds overwritten and evicted records, rewrite it from memory once it is twice as big
+                if (logRecords > 2 * maxEntries) {
+                    compact();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //holds logLock. Only the copy of the entries takes the cache lock, the rewrite runs without it
+    private void compact() throws IOException {
+        log.close();
+        log = null;
+
+        List<Map.Entry<String, String>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(entries.size());
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                snapshot.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            for (Map.Entry<String, String> entry : snapshot) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("could not replace " + file);
+        }
+        logRecords = snapshot.size();
+    }
+
+    //for onDestroy
+    public void close() {
+        diskExecutor.execute(() -> {
+            synchronized (logLock) {
+                try {
+                    if (log != null) {
+                        log.close();
+                        log = null;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    //segments translated independently: lines, kept in order so the output can be reassembled
+    public static String[] splitSegments(String text) {
+        return text.split("\n", -1);
+    }
+
+    //whitespace differences don't change the translation
+    public static String normalize(String segment) {
+        return segment.trim().replaceAll("\\s+", " ");
+    }
+
+    private static String key(String segment, String sourceLang, String targetLang) {
+        return sourceLang + ">" + targetLang + ":" + Long.toHexString(hash(normalize(segment)));
+    }
+
+    //64 bit FNV-1a, collisions are negligible at a few thousand entries
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized String summary() {
+        long total = hits + misses;
+        return String.format(Locale.US, "cache %d entries | hits %d/%d (%.0f%%)",
+                entries.size(), hits, total, total == 0 ? 0f : 100f * hits / total);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.myocrapp.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class responsibility:
+ * Keeping detected boxes alive between inference runs
+ * Associating new detections with existing tracks (greedy IoU matching)
+ * Predicting box positions for frames without inference (constant velocity, alpha-beta filter)
+ * Dropping tracks that were not confirmed for a while
+ *
+ * Lets detection run at a few Hz while the overlay moves at preview rate,
+ * and hides single missed detections (score dipping below the threshold).
+ * Plain Java, timestamps in milliseconds.
+ */
+public class BoxTracker {
+
+    private static final float IOU_THRESHOLD = 0.3f; //minimum overlap to continue a track
+    private static final float POSITION_GAIN = 0.6f; //alpha: how much a measurement corrects the prediction
+    private static final float VELOCITY_GAIN = 0.2f; //beta: how much a measurement corrects the velocity
+    private static final long MAX_MISSING_MS = 800; //track removed when not seen for this long
+    private static final long MAX_PREDICT_MS = 300; //stop extrapolating, a box flying off is worse than a box standing still
+
+    private static class Track {
+        final int id;
+        float cx;
+        float cy;
+        float w;
+        float h;
+        float vx; //px per ms
+        float vy;
+        long lastUpdateMs;
+        String label;
+        float score;
+
+        Track(int id, DetectionBox box, long timestampMs) {
+            this.id = id;
+            cx = (box.left + box.right) / 2f;
+            cy = (box.top + box.bottom) / 2f;
+            w = box.width();
+            h = box.height();
+            lastUpdateMs = timestampMs;
+            label = box.label;
+            score = box.score;
+        }
+
+        float predictX(long timestampMs) {
+            return cx + vx * Math.min(timestampMs - lastUpdateMs, MAX_PREDICT_MS);
+        }
+
+        float predictY(long timestampMs) {
+            return cy + vy * Math.min(timestampMs - lastUpdateMs, MAX_PREDICT_MS);
+        }
+
+        DetectionBox toBox(long timestampMs) {
+            float x = predictX(timestampMs);
+            float y = predictY(timestampMs);
+            return new DetectionBox(x - w / 2f, y - h / 2f, x + w / 2f, y + h / 2f, label, score, id);
+        }
+    }
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextId;
+
+    //new inference result, returns the tracked boxes for this timestamp
+    public synchronized List<DetectionBox> update(List<DetectionBox> detections, long timestampMs) {
+        removeExpired(timestampMs);
+
+        boolean[] trackMatched = new boolean[tracks.size()];
+        boolean[] detectionMatched = new boolean[detections.size()];
+
+        //greedy: repeatedly take the best remaining pair. Only a handful of boxes, O(n^2) per pass is fine
+        while (true) {
+            float bestIou = IOU_THRESHOLD;
+            int bestTrack = -1;
+            int bestDetection = -1;
+            for (int t = 0; t < tracks.size(); t++) {
+                if (trackMatched[t]) {
+                    continue;
+                }
+                DetectionBox predicted = tracks.get(t).toBox(timestampMs);
+                for (int d = 0; d < detections.size(); d++) {
+                    if (detectionMatched[d]) {
+                        continue;
+                    }
+                    DetectionBox det = detections.get(d);
+                    float iou = DetectionBox.iou(predicted.left, predicted.top, predicted.right, predicted.bottom,
+                            det.left, det.top, det.right, det.bottom);
+                    if (iou > bestIou) {
+                        bestIou = iou;
+                        bestTrack = t;
+                        bestDetection = d;
+                    }
+                }
+            }
+            if (bestTrack < 0) {
+                break;
+            }
+            trackMatched[bestTrack] = true;
+            detectionMatched[bestDetection] = true;
+            correct(tracks.get(bestTrack), detections.get(bestDetection), timestampMs);
+        }
+
+        for (int d = 0; d < detections.size(); d++) {
+            if (!detectionMatched[d]) {
+                tracks.add(new Track(nextId++, detections.get(d), timestampMs));
+            }
+        }
+        return snapshot(timestampMs);
+    }
+
+    //frame without inference: extrapolated boxes, state is not changed
+    public synchronized List<DetectionBox> predict(long timestampMs) {
+        removeExpired(timestampMs);
+        return snapshot(timestampMs);
+    }
+
+    public synchronized boolean isEmpty() {
+        return tracks.isEmpty();
+    }
+
+    public synchronized void clear() {
+        tracks.clear();
+    }
+
+    private static void correct(Track track, DetectionBox box, long timestampMs) {
+        long dt = Math.max(1, timestampMs - track.lastUpdateMs);
+        float predictedX = track.predictX(timestampMs);
+        float predictedY = track.predictY(timestampMs);
+
+        float measuredX = (box.left + box.right) / 2f;
+        float measuredY = (box.top + box.bottom) / 2f;
+        float residualX = measuredX - predictedX;
+        float residualY = measuredY - predictedY;
+
+        track.cx = predictedX + POSITION_GAIN * residualX;
+        track.cy = predictedY + POSITION_GAIN * residualY;
+        track.vx += VELOCITY_GAIN * residualX / dt;
+        track.vy += VELOCITY_GAIN * residualY / dt;
+        track.w += POSITION_GAIN * (box.width() - track.w);
+        track.h += POSITION_GAIN * (box.height() - track.h);
+
+        track.lastUpdateMs = timestampMs;
+        track.label = box.label;
+        track.score = box.score;
+    }
+
+    private void removeExpired(long timestampMs) {
+        for (int i = tracks.size() - 1; i >= 0; i--) {
+            if (timestampMs - tracks.get(i).lastUpdateMs > MAX_MISSING_MS) {
+                tracks.remove(i);
+            }
+        }
+    }
+
+    private List<DetectionBox> snapshot(long timestampMs) {
+        if (tracks.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DetectionBox> boxes = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            boxes.add(track.toBox(timestampMs));
+        }
+        return boxes;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.myocrapp.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stub Detector for desktop runs: bounding box of all pixels brighter than a threshold.
+ * Deterministic and cheap, so pipeline runs measure the pipeline and not a model.
+ */
+public class BrightRegionDetector implements Detector {
+
+    private final int threshold; //luma 0-255
+    private final int minPixels; //fewer bright pixels = nothing detected
+
+    public BrightRegionDetector(int threshold, int minPixels) {
+        this.threshold = threshold;
+        this.minPixels = minPixels;
+    }
+
+    @Override
+    public List<DetectionBox> detect(int[] argb, int width, int height, long timestampMs) {
+        int left = width;
+        int top = height;
+        int right = -1;
+        int bottom = -1;
+        int count = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = argb[row + x];
+                int luma = (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+                if (luma >= threshold) {
+                    count++;
+                    if (x < left) left = x;
+                    if (x > right) right = x;
+                    if (y < top) top = y;
+                    if (y > bottom) bottom = y;
+                }
+            }
+        }
+        if (count < minPixels) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new DetectionBox(left, top, right + 1, bottom + 1, "bright", 1f));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myocrapp.core;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class responsibility:
+ * Naming, counting and evicting the archived captures (IMG_*.jpg) in one directory
+ * Budget of total bytes and file count, least recently used captures are deleted first
+ * Recency survives restarts through the file modification time (touch() updates it)
+ * Telling which captures are old enough to be re-encoded smaller (archiveCandidates())
+ *
+ * Plain Java, no image code: encoding and decoding stay in CaptureDecoder.
+ * Methods that touch the disk (load, commit, touch) belong on a background thread.
+ */
+public class CaptureStore {
+
+    private final File dir;
+    private final long maxBytes;
+    private final int maxCount;
+    private final LinkedHashMap<File, Long> sizes = new LinkedHashMap<>(64, 0.75f, true); //LRU order, eldest first
+    private final Set<File> archived = new HashSet<>(); //re-encoded or checked this run, not offered again
+
+    private long totalBytes;
+    private long evicted;
+
+    public CaptureStore(File dir, long maxBytes, int maxCount) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.maxCount = maxCount;
+    }
+
+    //captures of earlier runs, oldest modification first. Evicts if the budget shrank since
+    public List<File> load() {
+        File[] files = dir.listFiles((d, name) -> isCapture(name));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            modified[i] = files[i].lastModified(); //one stat per file, not per comparison
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> modified[a] != modified[b]
+                ? Long.compare(modified[a], modified[b])
+                : files[a].getName().compareTo(files[b].getName())); //names are capture times
+        synchronized (this) {
+            for (int i : order) {
+                Long old = sizes.put(files[i], files[i].length());
+                totalBytes += files[i].length() - (old == null ? 0 : old);
+            }
+            return evict(null);
+        }
+    }
+
+    //name for the next capture, counted once it is written (commit)
+    public synchronized File newFile() {
+        String ts = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US).format(new Date());
+        File file = new File(dir, "IMG_" + ts + ".jpg");
+        for (int n = 1; file.exists() || sizes.containsKey(file); n++) {
+            file = new File(dir, "IMG_" + ts + "_" + n + ".jpg");
+        }
+        return file;
+    }
+
+    //a capture was written (or rewritten smaller): counted as most recent, returns the deleted captures
+    public synchronized List<File> commit(File file) {
+        Long old = sizes.put(file, file.length());
+        totalBytes += file.length() - (old == null ? 0 : old);
+        return evict(file);
+    }
+
+    //a capture was re-opened, moves to the end of the eviction order
+    public synchronized void touch(File file) {
+        if (sizes.containsKey(file)) {
+            sizes.get(file);
+            file.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    //archive candidate handled (re-encoded or small enough). The size may have changed in place,
+    //recency stays the same: the caller keeps the old modification time
+    public synchronized void archived(File file) {
+        Long old = sizes.get(file);
+        if (old != null) {
+            sizes.put(file, file.length());
+            totalBytes += file.length() - old;
+            archived.add(file);
+        }
+    }
+
+    //deletes least recently used captures until both budgets hold, never keep (the capture just written)
+    private List<File> evict(File keep) {
+        List<File> deleted = new ArrayList<>();
+        Iterator<Map.Entry<File, Long>> it = sizes.entrySet().iterator();
+        while ((totalBytes > maxBytes || sizes.size() > maxCount) && it.hasNext()) {
+            Map.Entry<File, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            it.remove();
+            archived.remove(eldest.getKey());
+            totalBytes -= eldest.getValue();
+            eldest.getKey().delete();
+            deleted.add(eldest.getKey());
+            evicted++;
+        }
+        return deleted;
+    }
+
+    //captures not archived yet, except the keepRecent most recently used, least recent first
+    public synchronized List<File> archiveCandidates(int keepRecent) {
+        List<File> all = new ArrayList<>(sizes.keySet());
+        List<File> candidates = new ArrayList<>();
+        for (File file : all.subList(0, Math.max(0, all.size() - keepRecent))) {
+            if (!archived.contains(file)) {
+                candidates.add(file);
+            }
+        }
+        return candidates;
+    }
+
+    public synchronized List<File> list() {
+        return new ArrayList<>(sizes.keySet());
+    }
+
+    public static boolean isCapture(String name) {
+        return name.startsWith("IMG_") && name.endsWith(".jpg");
+    }
+
+    public synchronized int size() {
+        return sizes.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "captures %d/%d | %.1f/%.0f MB | evicted %d",
+                sizes.size(), maxCount, totalBytes / 1e6, maxBytes / 1e6, evicted);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.myocrapp.core;
+
+/**
+ * Crop and scale for OCR input, in pixels of the full image.
+ * Built from a detection box (model input or image coordinates), widened by a margin
+ * so text touching the box edge survives, clamped to the image, and scaled down
+ * until it fits a pixel budget. Falls back to the full frame for missing or tiny boxes.
+ * Plain Java.
+ */
+public class CropRegion {
+
+    private static final int MIN_SIDE = 32; //smaller boxes are detection noise, OCR the whole frame instead
+
+    public final int left;
+    public final int top;
+    public final int width;
+    public final int height;
+    public final float scale; //applied after cropping, <= 1
+
+    private CropRegion(int left, int top, int width, int height, float scale) {
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+    }
+
+    //box in model input coordinates (e.g. 300x300 for a stretched image), mapped back to the image
+    public static CropRegion fromModelBox(float boxLeft, float boxTop, float boxRight, float boxBottom, int modelInputSize,
+                                          int imageWidth, int imageHeight, float margin, int maxPixels) {
+        float scaleX = (float) imageWidth / modelInputSize;
+        float scaleY = (float) imageHeight / modelInputSize;
+        return fromImageBox(boxLeft * scaleX, boxTop * scaleY, boxRight * scaleX, boxBottom * scaleY,
+                imageWidth, imageHeight, margin, maxPixels);
+    }
+
+    //box in image coordinates, margin as fraction of the box size added on every side
+    public static CropRegion fromImageBox(float boxLeft, float boxTop, float boxRight, float boxBottom,
+                                          int imageWidth, int imageHeight, float margin, int maxPixels) {
+        float marginX = (boxRight - boxLeft) * margin;
+        float marginY = (boxBottom - boxTop) * margin;
+
+        int left = clamp(Math.round(boxLeft - marginX), 0, imageWidth);
+        int top = clamp(Math.round(boxTop - marginY), 0, imageHeight);
+        int right = clamp(Math.round(boxRight + marginX), 0, imageWidth);
+        int bottom = clamp(Math.round(boxBottom + marginY), 0, imageHeight);
+
+        if (right - left < MIN_SIDE || bottom - top < MIN_SIDE) {
+            return fullFrame(imageWidth, imageHeight, maxPixels);
+        }
+        return new CropRegion(left, top, right - left, bottom - top, fitScale(right - left, bottom - top, maxPixels));
+    }
+
+    public static CropRegion fullFrame(int imageWidth, int imageHeight, int maxPixels) {
+        return new CropRegion(0, 0, imageWidth, imageHeight, fitScale(imageWidth, imageHeight, maxPixels));
+    }
+
+    //largest scale <= 1 with width * height * scale^2 <= maxPixels
+    static float fitScale(int width, int height, int maxPixels) {
+        long pixels = (long) width * height;
+        if (maxPixels <= 0 || pixels <= maxPixels) {
+            return 1f;
+        }
+        return (float) Math.sqrt((double) maxPixels / pixels);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public boolean isFullFrame(int imageWidth, int imageHeight) {
+        return left == 0 && top == 0 && width == imageWidth && height == imageHeight;
+    }
+
+    public int outputWidth() {
+        return Math.max(1, Math.round(width * scale));
+    }
+
+    public int outputHeight() {
+        return Math.max(1, Math.round(height * scale));
+    }
+}
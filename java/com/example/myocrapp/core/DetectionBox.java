@@ -0,0 +1,53 @@
+package com.example.myocrapp.core;
+
+/**
+ * One detected object in frame coordinates (pixels of the analysed frame).
+ * Plain Java value class so detection results can be passed to the overlay,
+ * tracker and tests without MediaPipe or android types.
+ */
+public class DetectionBox {
+
+    public final float left;
+    public final float top;
+    public final float right;
+    public final float bottom;
+    public final String label;
+    public final float score; //value between 0 - 1
+    public final int trackId; //set by BoxTracker, NO_TRACK for raw detections
+
+    public static final int NO_TRACK = -1;
+
+    public DetectionBox(float left, float top, float right, float bottom, String label, float score) {
+        this(left, top, right, bottom, label, score, NO_TRACK);
+    }
+
+    public DetectionBox(float left, float top, float right, float bottom, String label, float score, int trackId) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.label = label;
+        this.score = score;
+        this.trackId = trackId;
+    }
+
+    public float width() {
+        return right - left;
+    }
+
+    public float height() {
+        return bottom - top;
+    }
+
+    //intersection over union, 0 = no overlap, 1 = identical
+    public static float iou(float l1, float t1, float r1, float b1, float l2, float t2, float r2, float b2) {
+        float iw = Math.min(r1, r2) - Math.max(l1, l2);
+        float ih = Math.min(b1, b2) - Math.max(t1, t2);
+        if (iw <= 0f || ih <= 0f) {
+            return 0f;
+        }
+        float intersection = iw * ih;
+        float union = (r1 - l1) * (b1 - t1) + (r2 - l2) * (b2 - t2) - intersection;
+        return union > 0f ? intersection / union : 0f;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.myocrapp.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Class responsibility:
+ * Deciding which analysis frames actually get inferred
+ * Cheap change signal: luma sampled on a coarse grid of the Y plane, compared with the last inferred frame.
+ * Motion = number of grid cells that changed by more than a per-cell threshold, so one object moving
+ * in a static scene isn't averaged away by the cells around it
+ * Rate scales with the changed cells, from minRateHz (static) to maxRateHz (FULL_RATE_CELLS or more),
+ * never faster than measured inference latency allows
+ * Counting frames seen vs. inferred
+ *
+ * Plain Java, the caller passes the Y plane buffer and its strides.
+ */
+public class DetectionScheduler {
+
+    private static final int GRID_WIDTH = 16;
+    private static final int GRID_HEIGHT = 12;
+    private static final float SMOOTHING = 0.2f;
+    private static final int CELL_SAMPLES = 4; //per axis and cell
+    private static final int FULL_RATE_CELLS = 4; //changed cells for maxRateHz, a moving object covers a few
+
+    //policy
+    private float minRateHz = 1f; //static scene keep-alive
+    private float maxRateHz = 15f; //upper bound while the scene changes
+    private float motionThreshold = 12f; //abs luma difference (0-255) for a grid cell to count as changed
+    private float brightnessThreshold = 10f; //change of mean luma (0-255)
+    private float latencyHeadroom = 1.5f; //interval >= latency * headroom, leaves time for the rest of the pipeline
+
+    //signature of the last inferred frame and the current one, swapped instead of reallocated
+    private int[] reference = new int[GRID_WIDTH * GRID_HEIGHT];
+    private int[] current = new int[GRID_WIDTH * GRID_HEIGHT];
+    private boolean hasReference;
+
+    private long lastInferenceMs = Long.MIN_VALUE;
+    private volatile float avgLatencyMs;
+    private float avgIntervalMs;
+    private int lastChangedCells;
+
+    private long framesSeen;
+    private long framesInferred;
+
+    //called for every analysis frame on the camera thread
+    public synchronized boolean shouldInfer(ByteBuffer yPlane, int rowStride, int pixelStride,
+                                            int width, int height, long timestampMs) {
+        framesSeen++;
+        float currentMean = sampleGrid(yPlane, rowStride, pixelStride, width, height, current);
+
+        int changedCells;
+        float brightness;
+        if (hasReference) {
+            changedCells = 0;
+            long referenceSum = 0;
+            for (int i = 0; i < current.length; i++) {
+                if (Math.abs(current[i] - reference[i]) > motionThreshold) {
+                    changedCells++;
+                }
+                referenceSum += reference[i];
+            }
+            brightness = Math.abs(currentMean - (float) referenceSum / reference.length);
+        } else {
+            //first frame always counts as changed
+            changedCells = current.length;
+            brightness = Float.MAX_VALUE;
+        }
+        lastChangedCells = changedCells;
+
+        long elapsed = lastInferenceMs == Long.MIN_VALUE ? Long.MAX_VALUE : timestampMs - lastInferenceMs;
+        //lighting change: the whole picture is different, as urgent as a lot of motion
+        int activity = brightness >= brightnessThreshold ? FULL_RATE_CELLS : changedCells;
+        boolean infer = elapsed >= maxIntervalMs() || (activity > 0 && elapsed >= intervalMsFor(activity));
+        if (!infer) {
+            return false;
+        }
+
+        if (lastInferenceMs != Long.MIN_VALUE) {
+            avgIntervalMs = avgIntervalMs == 0f ? elapsed : avgIntervalMs + SMOOTHING * (elapsed - avgIntervalMs);
+        }
+        lastInferenceMs = timestampMs;
+        framesInferred++;
+
+        int[] swap = reference;
+        reference = current;
+        current = swap;
+        hasReference = true;
+        return true;
+    }
+
+    //fed back by the detector, limits the rate on slow devices
+    public void onInferenceLatency(float latencyMs) {
+        float avg = avgLatencyMs;
+        avgLatencyMs = avg == 0f ? latencyMs : avg + SMOOTHING * (latencyMs - avg);
+    }
+
+    //mean luma per grid cell from CELL_SAMPLES x CELL_SAMPLES points, so an edge moving inside a cell shows up
+    //before it reaches the cell center. A few thousand reads per frame
+    private static float sampleGrid(ByteBuffer yPlane, int rowStride, int pixelStride,
+                                    int width, int height, int[] out) {
+        int base = yPlane.position();
+        int rows = GRID_HEIGHT * CELL_SAMPLES;
+        int cols = GRID_WIDTH * CELL_SAMPLES;
+        Arrays.fill(out, 0);
+        long sum = 0;
+        for (int sy = 0; sy < rows; sy++) {
+            int y = (sy * height + height / 2) / rows;
+            int row = base + y * rowStride;
+            int cellRow = sy / CELL_SAMPLES * GRID_WIDTH;
+            for (int sx = 0; sx < cols; sx++) {
+                int x = (sx * width + width / 2) / cols;
+                out[cellRow + sx / CELL_SAMPLES] += yPlane.get(row + x * pixelStride) & 0xFF;
+            }
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] /= CELL_SAMPLES * CELL_SAMPLES;
+            sum += out[i];
+        }
+        return (float) sum / out.length;
+    }
+
+    private float minIntervalMs() {
+        return Math.max(1000f / maxRateHz, avgLatencyMs * latencyHeadroom);
+    }
+
+    //interval for this many changed cells: rate linear between minRateHz and maxRateHz
+    private float intervalMsFor(int changedCells) {
+        float share = Math.min(1f, (float) changedCells / FULL_RATE_CELLS);
+        float rateHz = minRateHz + (maxRateHz - minRateHz) * share;
+        return Math.max(1000f / rateHz, minIntervalMs());
+    }
+
+    private float maxIntervalMs() {
+        return 1000f / minRateHz;
+    }
+
+    public synchronized void setRateLimits(float minRateHz, float maxRateHz) {
+        if (minRateHz <= 0f || maxRateHz < minRateHz) {
+            throw new IllegalArgumentException("invalid rate limits: " + minRateHz + " - " + maxRateHz);
+        }
+        this.minRateHz = minRateHz;
+        this.maxRateHz = maxRateHz;
+    }
+
+    public synchronized void setThresholds(float motionThreshold, float brightnessThreshold) {
+        this.motionThreshold = motionThreshold;
+        this.brightnessThreshold = brightnessThreshold;
+    }
+
+    public synchronized void setLatencyHeadroom(float latencyHeadroom) {
+        this.latencyHeadroom = latencyHeadroom;
+    }
+
+    public synchronized float getMinRateHz() {
+        return minRateHz;
+    }
+
+    public synchronized float getMaxRateHz() {
+        return maxRateHz;
+    }
+
+    public synchronized float getMotionThreshold() {
+        return motionThreshold;
+    }
+
+    public synchronized float getBrightnessThreshold() {
+        return brightnessThreshold;
+    }
+
+    //rate the device could sustain right now, bounded by the policy
+    public synchronized float getTargetRateHz() {
+        return 1000f / minIntervalMs();
+    }
+
+    public synchronized float getEffectiveRateHz() {
+        return avgIntervalMs > 0f ? 1000f / avgIntervalMs : 0f;
+    }
+
+    //smoothed inference latency fed back by the detector, 0 before the first result
+    public float getAverageLatencyMs() {
+        return avgLatencyMs;
+    }
+
+    public synchronized long getFramesSeen() {
+        return framesSeen;
+    }
+
+    public synchronized long getFramesInferred() {
+        return framesInferred;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "inferred %d/%d | %.1f Hz (max %.1f) | changed %d cells",
+                framesInferred, framesSeen, getEffectiveRateHz(), getTargetRateHz(), lastChangedCells);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.myocrapp.core;
+
+import java.util.List;
+
+/**
+ * Object detection on an upright ARGB frame. Boxes in frame pixel coordinates.
+ * The app runs MediaPipe's ObjectDetector behind it (MediaPipeDetector), benchmarks use stubs.
+ * argb is only valid during detect(): an asynchronous detector copies it, returns null and hands
+ * the boxes to FramePipeline.onDetections() once they are ready.
+ */
+public interface Detector {
+
+    List<DetectionBox> detect(int[] argb, int width, int height, long timestampMs);
+
+    //true while an asynchronous detector has no room for another frame, the frame is skipped
+    default boolean isBusy() {
+        return false;
+    }
+}
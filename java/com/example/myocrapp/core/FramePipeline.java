@@ -0,0 +1,126 @@
+package com.example.myocrapp.core;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Class responsibility:
+ * The live detection loop, no android types. The app (DetectionHandler) and the desktop benchmark run the same code
+ * FrameSource or camera -> DetectionScheduler -> YuvToRgbConverter -> Detector -> BoxTracker -> ResultSink
+ * Records the same per-stage metrics on the device and on a desktop JVM
+ *
+ * process() runs on the calling thread (camera thread in the app). A synchronous detector answers right away,
+ * which makes runs with a stub detector deterministic. An asynchronous one (MediaPipe LIVE_STREAM) answers
+ * later through onDetections(), on its own thread.
+ */
+public class FramePipeline {
+
+    //the tracker fills the frames in between, 10 Hz inference is enough for a smooth overlay
+    public static final float MIN_RATE_HZ = 1f;
+    public static final float MAX_RATE_HZ = 10f;
+
+    private final FrameSource source; //null when the frames are pushed into process() (camera)
+    private final Detector detector;
+    private final ResultSink sink;
+    private final int minShortSide; //converter never downsamples below this (model input size)
+
+    private final YuvToRgbConverter converter = new YuvToRgbConverter();
+    private final DetectionScheduler scheduler = new DetectionScheduler();
+    private final BoxTracker tracker = new BoxTracker();
+    private final PipelineMetrics metrics = PipelineMetrics.get();
+
+    private volatile int frameWidth; //size of the last converted frame, the boxes refer to it
+    private volatile int frameHeight;
+    private volatile float avgConversionMs; //smoothed, input of the QualityGovernor
+
+    public FramePipeline(FrameSource source, Detector detector, ResultSink sink, int minShortSide) {
+        this.source = source;
+        this.detector = detector;
+        this.sink = sink;
+        this.minShortSide = minShortSide;
+        scheduler.setRateLimits(MIN_RATE_HZ, MAX_RATE_HZ);
+    }
+
+    //frames come from the camera through process()
+    public FramePipeline(Detector detector, ResultSink sink, int minShortSide) {
+        this(null, detector, sink, minShortSide);
+    }
+
+    //processes frames until the source is exhausted, returns the number of frames
+    public int run() throws IOException {
+        int frames = 0;
+        YuvFrame frame;
+        while ((frame = source.next()) != null) {
+            metrics.onFrameArrived(frame.timestampNanos); //the app counts them where the camera delivers
+            process(frame);
+            frames++;
+        }
+        return frames;
+    }
+
+    //one frame, returns true if it was handed to the detector. The frame is not used after this returns
+    public boolean process(YuvFrame frame) {
+        long timestampMs = frame.timestampMs();
+
+        //async detector still busy with earlier frames: the newest frame wins next time
+        if (detector.isBusy()) {
+            skip(timestampMs);
+            return false;
+        }
+
+        boolean infer = scheduler.shouldInfer(frame.y, frame.yRowStride, frame.yPixelStride,
+                frame.width, frame.height, timestampMs);
+        if (!infer) {
+            skip(timestampMs);
+            return false;
+        }
+
+        long conversionStart = System.nanoTime();
+        int sampleStep = YuvToRgbConverter.sampleStepFor(frame.width, frame.height, minShortSide);
+        int[] argb = frame.isRgba()
+                ? converter.convertRgba(frame.y, frame.yRowStride, frame.yPixelStride,
+                        frame.width, frame.height, frame.rotationDegrees, sampleStep)
+                : converter.convert(frame.y, frame.yRowStride, frame.yPixelStride,
+                        frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                        frame.width, frame.height, frame.rotationDegrees, sampleStep);
+        long conversionNanos = System.nanoTime() - conversionStart;
+        metrics.record(PipelineMetrics.Stage.YUV_CONVERSION, conversionNanos);
+        float avg = avgConversionMs;
+        avgConversionMs = avg == 0f ? conversionNanos / 1e6f : avg + 0.2f * (conversionNanos / 1e6f - avg);
+        int width = converter.getOutputWidth();
+        int height = converter.getOutputHeight();
+        if (width == 0 || height == 0) {
+            return false;
+        }
+
+        long inferenceStart = System.nanoTime();
+        List<DetectionBox> boxes = detector.detect(argb, width, height, timestampMs);
+        if (boxes != null) {
+            onDetections(boxes, timestampMs, width, height, System.nanoTime() - inferenceStart);
+        }
+        return true;
+    }
+
+    //frame without inference (skipped, or live detection paused): the tracked boxes moved to where they should be now
+    public void skip(long timestampMs) {
+        sink.onResult(timestampMs, tracker.predict(timestampMs), frameWidth, frameHeight, false);
+    }
+
+    //boxes of an inferred frame, any thread. Called by process() for synchronous detectors,
+    //by the detector itself once an asynchronous result arrives
+    public void onDetections(List<DetectionBox> boxes, long timestampMs, int width, int height, long inferenceNanos) {
+        metrics.record(PipelineMetrics.Stage.INFERENCE, inferenceNanos);
+        scheduler.onInferenceLatency(inferenceNanos / 1_000_000f);
+        frameWidth = width;
+        frameHeight = height;
+        sink.onResult(timestampMs, tracker.update(boxes, timestampMs), width, height, true);
+    }
+
+    public DetectionScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public float getAverageConversionMs() {
+        return avgConversionMs;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.myocrapp.core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes YUV frames to disk for ReplayFrameSource, planes stored as they are (strides and padding kept).
+ *
+ * File layout: magic, version, then per frame
+ * width, height, rotation, timestamp, y row/pixel stride, uv row/pixel stride, and the three planes (length + bytes).
+ */
+public class FrameRecorder implements Closeable {
+
+    static final int MAGIC = 0x59555646; //"YUVF"
+    static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private byte[] scratch = new byte[0];
+    private int frames;
+
+    public FrameRecorder(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    public void write(YuvFrame frame) throws IOException {
+        out.writeInt(frame.width);
+        out.writeInt(frame.height);
+        out.writeInt(frame.rotationDegrees);
+        out.writeLong(frame.timestampNanos);
+        out.writeInt(frame.yRowStride);
+        out.writeInt(frame.yPixelStride);
+        out.writeInt(frame.uvRowStride);
+        out.writeInt(frame.uvPixelStride);
+        writePlane(frame.y);
+        writePlane(frame.u);
+        writePlane(frame.v);
+        frames++;
+    }
+
+    //from position to limit, the caller's buffer position is not changed
+    private void writePlane(ByteBuffer plane) throws IOException {
+        ByteBuffer copy = plane.duplicate();
+        int length = copy.remaining();
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        copy.get(scratch, 0, length);
+        out.writeInt(length);
+        out.write(scratch, 0, length);
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
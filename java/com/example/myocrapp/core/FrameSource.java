@@ -0,0 +1,14 @@
+package com.example.myocrapp.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where frames come from: the camera on a device, a recording or a generator on a desktop JVM.
+ * A returned frame is only valid until the next call to next().
+ */
+public interface FrameSource extends Closeable {
+
+    //null when there are no more frames
+    YuvFrame next() throws IOException;
+}
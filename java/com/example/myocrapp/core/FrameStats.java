@@ -0,0 +1,57 @@
+package com.example.myocrapp.core;
+
+import java.util.Locale;
+
+/**
+ * Throughput and end-to-end latency of the detection loop.
+ * Latency = frame arrival in the analyzer until its result reaches the ui.
+ * Smoothed with an exponential moving average so the debug output stays readable.
+ * Thread safe, results arrive on the camera thread (IMAGE) or MediaPipe's thread (LIVE_STREAM).
+ */
+public class FrameStats {
+
+    private static final float SMOOTHING = 0.1f;
+
+    private long lastResultNanos;
+    private float avgIntervalMs;
+    private float avgLatencyMs;
+    private long results;
+    private long dropped;
+
+    public synchronized void onResult(long arrivalNanos, long nowNanos) {
+        float latencyMs = (nowNanos - arrivalNanos) / 1_000_000f;
+        avgLatencyMs = results == 0 ? latencyMs : avgLatencyMs + SMOOTHING * (latencyMs - avgLatencyMs);
+
+        if (lastResultNanos != 0) {
+            float intervalMs = (nowNanos - lastResultNanos) / 1_000_000f;
+            avgIntervalMs = avgIntervalMs == 0f ? intervalMs : avgIntervalMs + SMOOTHING * (intervalMs - avgIntervalMs);
+        }
+        lastResultNanos = nowNanos;
+        results++;
+    }
+
+    //frame skipped because too many were in flight, or result arrived too late
+    public synchronized void onDropped() {
+        dropped++;
+    }
+
+    public synchronized float getFps() {
+        return avgIntervalMs > 0f ? 1000f / avgIntervalMs : 0f;
+    }
+
+    public synchronized float getAverageLatencyMs() {
+        return avgLatencyMs;
+    }
+
+    public synchronized long getResults() {
+        return results;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "%.1f fps | %.0f ms | dropped %d", getFps(), avgLatencyMs, dropped);
+    }
+}
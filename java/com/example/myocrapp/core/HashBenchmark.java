@@ -0,0 +1,131 @@
+package com.example.myocrapp.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Desktop benchmark of capture deduplication, runs on a plain JVM:
+ *
+ *   java com.example.myocrapp.core.HashBenchmark [iterations]
+ *
+ * Times dHash on a 288x256 thumbnail (what the app hashes) and a lookup in a full OcrResultCache,
+ * and checks that a noisy copy of an image matches while a different image doesn't. Text-only pages
+ * are checked separately: their 9x8 cells are all about the same gray, so two different pages must
+ * still be further apart than MAX_DISTANCE.
+ * Exits with 1 if a matching check fails.
+ */
+public class HashBenchmark {
+
+    private static final int WIDTH = 288; //CaptureDecoder.HASH_WIDTH
+    private static final int HEIGHT = 256; //CaptureDecoder.HASH_HEIGHT
+    private static final int MAX_DISTANCE = 6; //OCRHandler.MAX_HASH_DISTANCE
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random random = new Random(42);
+
+        int[] page = page(random, 0);
+        int[] samePage = noisy(page, random, 12);
+        int[] otherPage = page(random, 1);
+
+        long pageHash = PerceptualHash.dHash(page, WIDTH, HEIGHT);
+        int sameDistance = PerceptualHash.distance(pageHash, PerceptualHash.dHash(samePage, WIDTH, HEIGHT));
+        int otherDistance = PerceptualHash.distance(pageHash, PerceptualHash.dHash(otherPage, WIDTH, HEIGHT));
+        System.out.println("distance same page " + sameDistance + ", other page " + otherDistance);
+
+        //justified text, same margins and line pitch, only the words differ
+        int[] textPage = textPage(2);
+        long textHash = PerceptualHash.dHash(textPage, WIDTH, HEIGHT);
+        int sameTextDistance = PerceptualHash.distance(textHash,
+                PerceptualHash.dHash(noisy(textPage, random, 12), WIDTH, HEIGHT));
+        int otherTextDistance = PerceptualHash.distance(textHash, PerceptualHash.dHash(textPage(3), WIDTH, HEIGHT));
+        System.out.println("distance same text page " + sameTextDistance + ", other text page " + otherTextDistance
+                + " (max " + MAX_DISTANCE + ")");
+
+        OcrResultCache<String> cache = new OcrResultCache<>(32, MAX_DISTANCE);
+        for (int i = 0; i < 31; i++) {
+            cache.put(random.nextLong(), "filler " + i);
+        }
+        cache.put(pageHash, "page");
+        String found = cache.find(PerceptualHash.dHash(samePage, WIDTH, HEIGHT));
+        String notFound = cache.find(PerceptualHash.dHash(otherPage, WIDTH, HEIGHT));
+
+        //warm-up, then measure
+        long sink = 0;
+        for (int i = 0; i < iterations / 10; i++) {
+            sink += PerceptualHash.dHash(page, WIDTH, HEIGHT);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += PerceptualHash.dHash(page, WIDTH, HEIGHT);
+        }
+        long hashNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += cache.find(pageHash ^ i) != null ? 1 : 0;
+        }
+        long findNanos = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.US, "dHash %dx%d %.2f us | find in %d entries %.3f us | %d",
+                WIDTH, HEIGHT, hashNanos / 1e3 / iterations, cache.size(), findNanos / 1e3 / iterations, sink & 1));
+
+        if (!"page".equals(found) || notFound != null) {
+            System.out.println("FAIL near-duplicate matching: found " + found + ", other " + notFound);
+            System.exit(1);
+        }
+        if (sameTextDistance > MAX_DISTANCE || otherTextDistance <= MAX_DISTANCE) {
+            System.out.println("FAIL text-only pages: same " + sameTextDistance + ", other " + otherTextDistance);
+            System.exit(1);
+        }
+    }
+
+    //dark text-like bars on a light background, layout depends on the seed, seed > 0 adds a figure
+    private static int[] page(Random random, int seed) {
+        Random layout = new Random(seed);
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            boolean textLine = (y / (3 + 2 * seed)) % 2 == 1;
+            int lineStart = layout.nextInt(WIDTH / 3);
+            int lineEnd = WIDTH - layout.nextInt(WIDTH / 3);
+            for (int x = 0; x < WIDTH; x++) {
+                boolean figure = seed > 0 && x > WIDTH / 2 && y < HEIGHT / 2; //other pages get a picture block
+                int v = figure || textLine && x >= lineStart && x < lineEnd && (x / 3) % 2 == 0 ? 30 : 220;
+                argb[y * WIDTH + x] = 0xFF000000 | v << 16 | v << 8 | v;
+            }
+        }
+        return argb;
+    }
+
+    //text only: lines of dark words at a fixed pitch between fixed margins, word lengths depend on the seed
+    private static int[] textPage(int seed) {
+        Random words = new Random(seed);
+        int[] argb = new int[WIDTH * HEIGHT];
+        Arrays.fill(argb, 0xFFDCDCDC);
+        int margin = WIDTH / 18;
+        for (int top = margin; top + 5 < HEIGHT - margin; top += 8) {
+            for (int x = margin; x < WIDTH - margin; ) {
+                int end = Math.min(WIDTH - margin, x + 6 + words.nextInt(30));
+                for (int y = top; y < top + 5; y++) {
+                    for (int i = x; i < end; i++) {
+                        if (words.nextInt(3) > 0) { //strokes, not solid bars
+                            argb[y * WIDTH + i] = 0xFF1E1E1E;
+                        }
+                    }
+                }
+                x = end + 4;
+            }
+        }
+        return argb;
+    }
+
+    private static int[] noisy(int[] argb, Random random, int amplitude) {
+        int[] out = new int[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            int v = Math.max(0, Math.min(255, (argb[i] & 0xFF) + random.nextInt(2 * amplitude + 1) - amplitude));
+            out[i] = 0xFF000000 | v << 16 | v << 8 | v;
+        }
+        return out;
+    }
+}
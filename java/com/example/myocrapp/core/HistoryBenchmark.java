@@ -0,0 +1,180 @@
+package com.example.myocrapp.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Desktop benchmark of the OCR history, runs on a plain JVM:
+ *
+ *   java com.example.myocrapp.core.HistoryBenchmark [documents] [queries] [max p95 ms]
+ *
+ * Adds synthetic OCR results (Zipf-distributed words) to an OcrHistoryStore in a temp file, recognizes
+ * some of them again with new text, reloads it like an app start and runs 1-3 term queries.
+ * Prints add, load and query times and checks a sample of queries against a scan of all texts.
+ * Exits with 1 if a result differs from the scan or query p95 exceeds the budget.
+ */
+public class HistoryBenchmark {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_DOCUMENT = 150; //a short page
+    private static final int LIMIT = 50;
+    private static final int CHECKED_QUERIES = 50;
+    private static final int REPLACE_EVERY = 100; //this share of the results is recognized again later
+
+    public static void main(String[] args) throws IOException {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        float maxP95Ms = args.length > 2 ? Float.parseFloat(args[2]) : -1f;
+
+        Random random = new Random(42);
+        String[] words = vocabulary(random);
+        double[] zipf = zipfCumulative();
+        String[] texts = new String[documents];
+        long[] timestamps = new long[documents];
+        for (int d = 0; d < documents; d++) {
+            texts[d] = text(words, zipf, random);
+            timestamps[d] = d;
+        }
+
+        File file = File.createTempFile("ocr_history", ".bin");
+        file.deleteOnExit();
+        boolean failed = false;
+        try {
+            OcrHistoryStore store = new OcrHistoryStore(file);
+            long start = System.nanoTime();
+            for (int d = 0; d < documents; d++) {
+                store.put("IMG_" + d + ".jpg", timestamps[d], "IMG_" + d + ".jpg", texts[d]);
+            }
+            long addNanos = System.nanoTime() - start;
+            //reopened captures: the new text replaces the old one and the entry counts as the newest
+            for (int d = 0; d < documents; d += REPLACE_EVERY) {
+                texts[d] = text(words, zipf, random);
+                timestamps[d] = documents + d;
+                store.put("IMG_" + d + ".jpg", timestamps[d], "IMG_" + d + ".jpg", texts[d]);
+            }
+            store.close();
+
+            OcrHistoryStore loaded = new OcrHistoryStore(file);
+            start = System.nanoTime();
+            loaded.load();
+            long loadNanos = System.nanoTime() - start;
+            System.out.println(loaded.summary());
+            System.out.println(String.format(Locale.US, "add %.1f us/result | load %.0f ms | file %d KB",
+                    addNanos / 1e3 / documents, loadNanos / 1e6, file.length() / 1024));
+
+            for (int terms = 1; terms <= 3; terms++) {
+                //warm-up, then measure
+                for (int q = 0; q < queries / 10; q++) {
+                    loaded.search(query(words, zipf, random, terms), LIMIT);
+                }
+                long[] nanos = new long[queries];
+                long found = 0;
+                for (int q = 0; q < queries; q++) {
+                    String query = query(words, zipf, random, terms);
+                    long queryStart = System.nanoTime();
+                    found += loaded.search(query, LIMIT).size();
+                    nanos[q] = System.nanoTime() - queryStart;
+                }
+                Arrays.sort(nanos);
+                double p95 = nanos[(int) (queries * 0.95)] / 1e6;
+                System.out.println(String.format(Locale.US,
+                        "%d term queries: p50 %.3f ms | p95 %.3f ms | max %.3f ms | %.1f results",
+                        terms, nanos[queries / 2] / 1e6, p95, nanos[queries - 1] / 1e6, (double) found / queries));
+                if (maxP95Ms > 0 && p95 > maxP95Ms) {
+                    System.out.println(String.format(Locale.US, "FAIL %d term p95 %.3f ms > %.3f ms", terms, p95, maxP95Ms));
+                    failed = true;
+                }
+            }
+
+            for (int q = 0; q < CHECKED_QUERIES; q++) {
+                String query = query(words, zipf, random, 1 + q % 3);
+                if (!matches(loaded.search(query, Integer.MAX_VALUE), texts, timestamps, query)) {
+                    System.out.println("FAIL results for \"" + query + "\" differ from a scan");
+                    failed = true;
+                }
+            }
+        } finally {
+            file.delete();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    //documents containing every query term as a word, newest timestamp first
+    private static boolean matches(List<OcrHistoryStore.Entry> results, String[] texts, long[] timestamps, String query) {
+        List<String> queryTerms = OcrHistoryStore.tokenize(query);
+        List<Long> expected = new ArrayList<>();
+        for (int d = 0; d < texts.length; d++) {
+            Set<String> words = new HashSet<>(OcrHistoryStore.tokenize(texts[d]));
+            if (words.containsAll(queryTerms)) {
+                expected.add(timestamps[d]);
+            }
+        }
+        expected.sort(Collections.reverseOrder());
+        if (expected.size() != results.size()) {
+            return false;
+        }
+        for (int r = 0; r < results.size(); r++) {
+            if (results.get(r).getTimestampMs() != expected.get(r)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(String[] words, double[] zipf, Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < WORDS_PER_DOCUMENT; w++) {
+            text.append(words[pick(zipf, random)]).append(w % 12 == 11 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+
+    private static String query(String[] words, double[] zipf, Random random, int terms) {
+        StringBuilder query = new StringBuilder();
+        for (int t = 0; t < terms; t++) {
+            query.append(t == 0 ? "" : " ").append(words[pick(zipf, random)]);
+        }
+        return query.toString();
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            char[] word = new char[3 + random.nextInt(8)];
+            for (int c = 0; c < word.length; c++) {
+                word[c] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        return words;
+    }
+
+    //word i is used proportional to 1 / (i + 1), like natural text
+    private static double[] zipfCumulative() {
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < VOCABULARY; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, Random random) {
+        int at = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(cumulative.length - 1, at >= 0 ? at : -at - 1);
+    }
+}
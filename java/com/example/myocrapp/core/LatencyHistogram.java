@@ -0,0 +1,88 @@
+package com.example.myocrapp.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with geometric buckets (50 us * 1.4^i, up to ~25 s).
+ * Recording is a few atomic increments, cheap enough to stay on in production builds.
+ * Percentiles are bucket upper bounds, i.e. accurate to ~40%.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+    private static final double FIRST_BOUND_US = 50.0;
+    private static final double GROWTH = 1.4;
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        double us = nanos / 1000.0;
+        if (us <= FIRST_BOUND_US) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(us / FIRST_BOUND_US) / LOG_GROWTH);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    static double upperBoundMs(int bucket) {
+        return FIRST_BOUND_US * Math.pow(GROWTH, bucket) / 1000.0;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMs() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / n;
+    }
+
+    public double getMaxMs() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    //p in 0..1
+    public double percentileMs(double p) {
+        long n = count.get();
+        if (n == 0) {
+            return 0.0;
+        }
+        long target = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBoundMs(i), getMaxMs());
+            }
+        }
+        return getMaxMs();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.myocrapp.core;
+
+import java.util.Locale;
+
+/**
+ * Count, last, average, min and max of a latency in milliseconds.
+ * Used to compare two ways of doing the same thing (e.g. capture paths). Thread safe.
+ */
+public class LatencyStats {
+
+    private final String name;
+    private long count;
+    private long lastMs;
+    private long totalMs;
+    private long minMs = Long.MAX_VALUE;
+    private long maxMs;
+
+    public LatencyStats(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(long latencyMs) {
+        count++;
+        lastMs = latencyMs;
+        totalMs += latencyMs;
+        minMs = Math.min(minMs, latencyMs);
+        maxMs = Math.max(maxMs, latencyMs);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getAverageMs() {
+        return count == 0 ? 0 : totalMs / count;
+    }
+
+    public synchronized String summary() {
+        if (count == 0) {
+            return name + ": -";
+        }
+        return String.format(Locale.US, "%s: %d ms (avg %d, min %d, max %d, n=%d)",
+                name, lastMs, totalMs / count, minMs, maxMs, count);
+    }
+}
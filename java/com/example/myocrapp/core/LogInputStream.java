@@ -0,0 +1,99 @@
+package com.example.myocrapp.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reading an append-only record log (TranslationCache, OcrHistoryStore).
+ * Knows its position, so a reader can remember where the last complete record ended and
+ * cut a torn or corrupt tail off before new records are appended behind it.
+ * Length prefixes are checked against the bytes left in the file before anything is allocated.
+ */
+public class LogInputStream extends DataInputStream {
+
+    private final long length;
+
+    public LogInputStream(File file) throws IOException {
+        super(new CountingInputStream(new BufferedInputStream(new FileInputStream(file))));
+        this.length = file.length();
+    }
+
+    public long position() {
+        return ((CountingInputStream) in).count;
+    }
+
+    public long remaining() {
+        return length - position();
+    }
+
+    //int length + UTF-8 bytes (writeUTF is limited to 64 KB). IOException if the length can't be right
+    public String readString() throws IOException {
+        int size = readInt();
+        if (size < 0 || size > remaining()) {
+            throw new IOException("corrupt record, string length " + size);
+        }
+        byte[] bytes = new byte[size];
+        readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //drops everything after the last complete record, appends continue from there
+    public static void truncate(File file, long validLength) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(validLength);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+        private long mark;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            mark = count;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            count = mark;
+        }
+    }
+}
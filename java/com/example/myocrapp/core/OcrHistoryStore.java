@@ -0,0 +1,506 @@
+package com.example.myocrapp.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class responsibility:
+ * Keeping every OCR result (text, capture file, time, language, translations) across restarts
+ * Full-text search over all of them with an inverted index: term -> ascending document numbers.
+ * Document numbers follow the order results were recognized in, a replaced result gets a new one
+ * Updating the index incrementally per result: only terms that appear or disappear are touched
+ *
+ * Persisted as an append-only binary log, one record per result, language or translation.
+ * A record for an existing key replaces the earlier one. Once replaced records are more than half of the log,
+ * it is rewritten from memory (temp file, then renamed over the log).
+ * The index lives in memory and is rebuilt from the log by load().
+ * Plain Java, all methods block: call them from a background thread.
+ */
+public class OcrHistoryStore {
+
+    private static final int FILE_VERSION = 2; //2: entries keyed by capture file or id instead of time
+    private static final byte RECORD_RESULT = 1;
+    private static final byte RECORD_LANGUAGE = 2;
+    private static final byte RECORD_TRANSLATION = 3;
+    private static final int MIN_COMPACT_RECORDS = 256; //small logs are not worth rewriting
+
+    //one OCR result. The key is the capture file path, or a unique id if the capture wasn't archived,
+    //so recognizing the same capture again updates its entry
+    public static class Entry {
+        public final String key;
+        private long timestampMs;
+        private String captureFile; //"" if the capture wasn't archived
+        private String text;
+        private String language = "";
+        private final Map<String, String> translations = new LinkedHashMap<>(); //target language -> text
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        public synchronized long getTimestampMs() {
+            return timestampMs;
+        }
+
+        public synchronized String getCaptureFile() {
+            return captureFile;
+        }
+
+        public synchronized String getText() {
+            return text;
+        }
+
+        public synchronized String getLanguage() {
+            return language;
+        }
+
+        public synchronized Map<String, String> getTranslations() {
+            return new LinkedHashMap<>(translations);
+        }
+
+        //terms of the text and all translations, what the index holds for this entry
+        synchronized Set<String> terms() {
+            Set<String> terms = new HashSet<>(tokenize(text));
+            for (String translation : translations.values()) {
+                terms.addAll(tokenize(translation));
+            }
+            return terms;
+        }
+    }
+
+    //ascending document numbers of one term, grows by doubling
+    private static class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        //false if the term was already in this document
+        boolean add(int doc) {
+            if (size > 0 && docs[size - 1] >= doc) {
+                int at = Arrays.binarySearch(docs, 0, size, doc);
+                if (at >= 0) {
+                    return false;
+                }
+                insert(-at - 1, doc); //older entry updated
+                return true;
+            }
+            insert(size, doc);
+            return true;
+        }
+
+        private void insert(int at, int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, at, docs, at + 1, size - at);
+            docs[at] = doc;
+            size++;
+        }
+
+        //false if the term wasn't in this document
+        boolean remove(int doc) {
+            int at = Arrays.binarySearch(docs, 0, size, doc);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(docs, at + 1, docs, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int doc) {
+            return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+        }
+    }
+
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>(); //document number = position, null where an entry moved away
+    private final Map<String, Integer> docByKey = new HashMap<>();
+    private final Map<String, Postings> index = new HashMap<>();
+
+    private DataOutputStream log; //opened lazily
+    private int logRecords; //records in the log
+    private int liveRecords; //records a rewrite would keep: result, language and translations per entry
+    private long postingCount; //(term, document) pairs, for summary()
+
+    public OcrHistoryStore(File file) {
+        this.file = file;
+    }
+
+    //reads the log written by earlier runs and rebuilds the index. A torn or corrupt tail (crash while
+    //writing) is cut off so new records don't land behind it; a log of another version is started over
+    public synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (LogInputStream in = new LogInputStream(file)) {
+            if (in.remaining() >= 4 && in.readInt() == FILE_VERSION) {
+                validLength = in.position();
+                while (readRecord(in)) {
+                    logRecords++;
+                    validLength = in.position();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (validLength < file.length()) {
+            try {
+                LogInputStream.truncate(file, validLength);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        compactIfNeeded();
+    }
+
+    //false at the end of the log or at the first record that can't be read completely. Later records win
+    private boolean readRecord(LogInputStream in) {
+        try {
+            if (in.remaining() == 0) {
+                return false;
+            }
+            byte type = in.readByte();
+            String key = in.readUTF();
+            if (type == RECORD_RESULT) {
+                long timestampMs = in.readLong();
+                String captureFile = in.readUTF();
+                putInMemory(key, timestampMs, captureFile, in.readString());
+            } else if (type == RECORD_LANGUAGE) {
+                setLanguageInMemory(key, in.readUTF());
+            } else if (type == RECORD_TRANSLATION) {
+                String target = in.readUTF();
+                putTranslationInMemory(key, target, in.readString());
+            } else {
+                return false; //unknown record, the rest can't be parsed
+            }
+            return true;
+        } catch (IOException e) {
+            return false; //EOFException: record cut off, others: garbage
+        }
+    }
+
+    //OCR result, indexed right away. An existing key (same capture recognized again) is replaced and moves to
+    //the newest document number, its language and translations belonged to the old text and are dropped
+    public synchronized void put(String key, long timestampMs, String captureFile, String text) {
+        String file = captureFile == null ? "" : captureFile;
+        putInMemory(key, timestampMs, file, text);
+        try {
+            DataOutputStream out = openLog();
+            out.writeByte(RECORD_RESULT);
+            out.writeUTF(key);
+            out.writeLong(timestampMs);
+            out.writeUTF(file);
+            writeString(out, text);
+            out.flush();
+            logRecords++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        compactIfNeeded();
+    }
+
+    //detected source language of a result (language id runs after OCR)
+    public synchronized void setLanguage(String key, String language) {
+        if (!setLanguageInMemory(key, language)) {
+            return;
+        }
+        try {
+            DataOutputStream out = openLog();
+            out.writeByte(RECORD_LANGUAGE);
+            out.writeUTF(key);
+            out.writeUTF(language);
+            out.flush();
+            logRecords++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        compactIfNeeded();
+    }
+
+    //finished translation of a result, also searchable. Replaces an earlier one into the same language
+    public synchronized void putTranslation(String key, String targetLanguage, String translation) {
+        if (!putTranslationInMemory(key, targetLanguage, translation)) {
+            return;
+        }
+        try {
+            DataOutputStream out = openLog();
+            out.writeByte(RECORD_TRANSLATION);
+            out.writeUTF(key);
+            out.writeUTF(targetLanguage);
+            writeString(out, translation);
+            out.flush();
+            logRecords++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        compactIfNeeded();
+    }
+
+    private void putInMemory(String key, long timestampMs, String captureFile, String text) {
+        Integer old = docByKey.get(key);
+        Entry entry;
+        if (old == null) {
+            entry = new Entry(key);
+        } else {
+            //search lists newest first by document number, the replaced result belongs at the front
+            entry = entries.get(old);
+            reindex(old, entry.terms(), Collections.emptySet());
+            entries.set(old, null);
+        }
+        int doc = entries.size();
+        entries.add(entry);
+        docByKey.put(key, doc);
+        liveRecords += 1 - recordsOf(entry);
+        synchronized (entry) {
+            entry.timestampMs = timestampMs;
+            entry.captureFile = captureFile;
+            entry.text = text;
+            entry.language = "";
+            entry.translations.clear();
+        }
+        reindex(doc, Collections.emptySet(), entry.terms());
+    }
+
+    private boolean setLanguageInMemory(String key, String language) {
+        Integer doc = docByKey.get(key);
+        if (doc == null) {
+            return false;
+        }
+        Entry entry = entries.get(doc);
+        liveRecords -= recordsOf(entry);
+        synchronized (entry) {
+            entry.language = language;
+        }
+        liveRecords += recordsOf(entry);
+        return true;
+    }
+
+    private boolean putTranslationInMemory(String key, String targetLanguage, String translation) {
+        Integer doc = docByKey.get(key);
+        if (doc == null) {
+            return false;
+        }
+        Entry entry = entries.get(doc);
+        Set<String> before = entry.terms();
+        liveRecords -= recordsOf(entry);
+        synchronized (entry) {
+            entry.translations.put(targetLanguage, translation);
+        }
+        liveRecords += recordsOf(entry);
+        reindex(doc, before, entry.terms());
+        return true;
+    }
+
+    //records that describe the entry, 0 for a new one
+    private static int recordsOf(Entry entry) {
+        synchronized (entry) {
+            if (entry.text == null) {
+                return 0;
+            }
+            return 1 + (entry.language.isEmpty() ? 0 : 1) + entry.translations.size();
+        }
+    }
+
+    //the log is rewritten once the replaced records (old texts, languages, translations) outnumber the live ones
+    private void compactIfNeeded() {
+        if (logRecords < MIN_COMPACT_RECORDS || logRecords - liveRecords <= liveRecords) {
+            return;
+        }
+        try {
+            compact();
+        } catch (IOException e) {
+            e.printStackTrace(); //the old log stays, appends continue
+        }
+    }
+
+    //live records in document order into a temp file, which then replaces the log
+    private void compact() throws IOException {
+        close();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            for (Entry entry : entries) {
+                if (entry == null) {
+                    continue;
+                }
+                synchronized (entry) {
+                    out.writeByte(RECORD_RESULT);
+                    out.writeUTF(entry.key);
+                    out.writeLong(entry.timestampMs);
+                    out.writeUTF(entry.captureFile);
+                    writeString(out, entry.text);
+                    if (!entry.language.isEmpty()) {
+                        out.writeByte(RECORD_LANGUAGE);
+                        out.writeUTF(entry.key);
+                        out.writeUTF(entry.language);
+                    }
+                    for (Map.Entry<String, String> translation : entry.translations.entrySet()) {
+                        out.writeByte(RECORD_TRANSLATION);
+                        out.writeUTF(entry.key);
+                        out.writeUTF(translation.getKey());
+                        writeString(out, translation.getValue());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("could not replace " + file);
+        }
+        logRecords = liveRecords;
+    }
+
+    //only the difference is touched: terms gone from the entry lose the doc, new terms get it
+    private void reindex(int doc, Set<String> before, Set<String> after) {
+        for (String term : before) {
+            if (after.contains(term)) {
+                continue;
+            }
+            Postings postings = index.get(term);
+            if (postings != null && postings.remove(doc)) {
+                postingCount--;
+                if (postings.size == 0) {
+                    index.remove(term);
+                }
+            }
+        }
+        for (String term : after) {
+            if (before.contains(term)) {
+                continue;
+            }
+            Postings postings = index.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                index.put(term, postings);
+            }
+            if (postings.add(doc)) {
+                postingCount++;
+            }
+        }
+    }
+
+    //results containing all terms of the query, most recently recognized first
+    public synchronized List<Entry> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Postings[] lists = new Postings[queryTerms.size()];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = index.get(queryTerms.get(i));
+            if (lists[i] == null) {
+                return Collections.emptyList(); //a term nobody contains
+            }
+        }
+        //walk the shortest list from the newest end, look the others up by binary search
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings shortest = lists[0];
+        List<Entry> results = new ArrayList<>();
+        for (int i = shortest.size - 1; i >= 0 && results.size() < limit; i--) {
+            int doc = shortest.docs[i];
+            boolean all = true;
+            for (int l = 1; l < lists.length && all; l++) {
+                all = lists[l].contains(doc);
+            }
+            if (all) {
+                results.add(entries.get(doc));
+            }
+        }
+        return results;
+    }
+
+    //lower-case words of letters, digits and combining marks (Hindi). Han and kana characters are
+    //one term each since there are no spaces between words
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            boolean ideograph = isIdeograph(c);
+            boolean word = !ideograph && (Character.isLetterOrDigit(c)
+                    || Character.getType(c) == Character.NON_SPACING_MARK
+                    || Character.getType(c) == Character.COMBINING_SPACING_MARK);
+            if (word) {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+            if (ideograph) {
+                tokens.add(String.valueOf(c));
+            }
+        }
+        if (start >= 0) {
+            tokens.add(lower.substring(start));
+        }
+        return tokens;
+    }
+
+    private static boolean isIdeograph(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA;
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        if (log == null) {
+            boolean fresh = !file.exists() || file.length() == 0;
+            log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            if (fresh) {
+                log.writeInt(FILE_VERSION);
+            }
+        }
+        return log;
+    }
+
+    //writeUTF is limited to 64 KB, a dense page can be more
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public synchronized void close() {
+        try {
+            if (log != null) {
+                log.close();
+                log = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized int size() {
+        return docByKey.size();
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "history %d results | %d terms | %d postings",
+                docByKey.size(), index.size(), postingCount);
+    }
+}
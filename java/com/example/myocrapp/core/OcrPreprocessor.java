@@ -0,0 +1,267 @@
+package com.example.myocrapp.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Class responsibility:
+ * Preparing a document image for OCR: grayscale, deskew, adaptive binarization
+ * Skew is estimated from the text itself (projection profiles of a downscaled copy over -10..10 degrees),
+ * the detector only gives an axis-aligned box, so there are no corners for a perspective correction
+ * Binarization: Bradley-Roth local mean threshold over an integral image, robust against uneven lighting
+ *
+ * Plain Java on int/byte arrays. The per-pixel passes run on horizontal stripes in parallel
+ * when an executor is given. Buffers are reused between calls, so one instance per thread.
+ */
+public class OcrPreprocessor {
+
+    private static final float MAX_SKEW_DEGREES = 10f;
+    private static final float SKEW_STEP_DEGREES = 0.5f;
+    private static final float MIN_SKEW_DEGREES = 0.5f; //below this rotating costs more than it helps
+    private static final int SKEW_SAMPLE_SIDE = 400; //skew is estimated on a copy this wide
+    private static final int WINDOW_DIVISOR = 8; //threshold window = width / 8
+    private static final int THRESHOLD_PERCENT = 15; //darker than local mean by this much = ink
+
+    private final ExecutorService executor; //null = single threaded
+    private final int stripes;
+
+    private byte[] gray = new byte[0];
+    private byte[] rotated = new byte[0];
+    private int[] integral = new int[0]; //half the memory of long[]. Past ~8 MP the sums wrap, window sums stay exact (mod 2^32)
+    private int[] output = new int[0];
+    private int[] skewXs = new int[0]; //dark pixels of the skew sample, reused like the buffers above
+    private int[] skewYs = new int[0];
+    private int[] skewProfile = new int[0];
+    private int outputWidth;
+    private int outputHeight;
+    private float lastSkewDegrees;
+
+    public OcrPreprocessor(ExecutorService executor, int stripes) {
+        this.executor = executor;
+        this.stripes = executor == null ? 1 : Math.max(1, stripes);
+    }
+
+    //argb in, black/white argb out (internal buffer, valid until the next call), same size as the input
+    public int[] process(int[] argb, int width, int height) {
+        int size = width * height;
+        if (gray.length < size) {
+            gray = new byte[size];
+            rotated = new byte[size];
+            output = new int[size];
+            PipelineMetrics.get().countAllocation(6L * size);
+        }
+        if (integral.length < (width + 1) * (height + 1)) {
+            integral = new int[(width + 1) * (height + 1)];
+            PipelineMetrics.get().countAllocation(4L * (width + 1) * (height + 1));
+        }
+        outputWidth = width;
+        outputHeight = height;
+
+        byte[] g = gray;
+        forStripes(height, (from, to) -> toGray(argb, g, width, from, to));
+
+        lastSkewDegrees = estimateSkew(g, width, height);
+        byte[] source = g;
+        if (Math.abs(lastSkewDegrees) >= MIN_SKEW_DEGREES) {
+            byte[] r = rotated;
+            double radians = Math.toRadians(-lastSkewDegrees);
+            forStripes(height, (from, to) -> rotate(g, r, width, height, radians, from, to));
+            source = r;
+        }
+
+        buildIntegral(source, width, height);
+        byte[] src = source;
+        forStripes(height, (from, to) -> threshold(src, width, height, from, to));
+        return output;
+    }
+
+    //integer BT.601 luma
+    private static void toGray(int[] argb, byte[] gray, int width, int fromRow, int toRow) {
+        for (int i = fromRow * width, end = toRow * width; i < end; i++) {
+            int p = argb[i];
+            gray[i] = (byte) ((((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8);
+        }
+    }
+
+    //text lines give sharp peaks in the row profile when the angle is right: maximize the profile variance
+    float estimateSkew(byte[] gray, int width, int height) {
+        int step = Math.max(1, width / SKEW_SAMPLE_SIDE);
+        int sw = width / step;
+        int sh = height / step;
+        if (sw < 16 || sh < 16) {
+            return 0f;
+        }
+        //dark pixels of the downscaled copy, threshold at the global mean
+        long sum = 0;
+        for (int y = 0; y < sh; y++) {
+            for (int x = 0; x < sw; x++) {
+                sum += gray[y * step * width + x * step] & 0xFF;
+            }
+        }
+        int mean = (int) (sum / ((long) sw * sh));
+        int count = 0;
+        if (skewXs.length < sw * sh) {
+            skewXs = new int[sw * sh];
+            skewYs = new int[sw * sh];
+            PipelineMetrics.get().countAllocation(8L * sw * sh);
+        }
+        int[] xs = skewXs;
+        int[] ys = skewYs;
+        for (int y = 0; y < sh; y++) {
+            for (int x = 0; x < sw; x++) {
+                if ((gray[y * step * width + x * step] & 0xFF) < mean * 3 / 4) {
+                    xs[count] = x - sw / 2;
+                    ys[count] = y - sh / 2;
+                    count++;
+                }
+            }
+        }
+        if (count < 50) {
+            return 0f;
+        }
+
+        int bins = 2 * (sw + sh);
+        if (skewProfile.length < bins) {
+            skewProfile = new int[bins];
+            PipelineMetrics.get().countAllocation(4L * bins);
+        }
+        int[] profile = skewProfile;
+        float best = 0f;
+        double bestScore = -1;
+        for (float angle = -MAX_SKEW_DEGREES; angle <= MAX_SKEW_DEGREES + 1e-3f; angle += SKEW_STEP_DEGREES) {
+            double radians = Math.toRadians(angle);
+            double sin = Math.sin(radians);
+            double cos = Math.cos(radians);
+            Arrays.fill(profile, 0, bins, 0);
+            for (int i = 0; i < count; i++) {
+                //row of the point after rotating the text by -angle
+                int row = (int) Math.round(ys[i] * cos - xs[i] * sin) + bins / 2;
+                if (row >= 0 && row < bins) {
+                    profile[row]++;
+                }
+            }
+            double score = 0;
+            for (int b = 0; b < bins; b++) {
+                score += (double) profile[b] * profile[b]; //sum of squares: same total, peakier = larger
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = angle;
+            }
+        }
+        return best;
+    }
+
+    //inverse mapping with bilinear interpolation, outside = white paper
+    private static void rotate(byte[] src, byte[] dst, int width, int height, double radians,
+                               int fromRow, int toRow) {
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        for (int y = fromRow; y < toRow; y++) {
+            double dy = y - cy;
+            for (int x = 0; x < width; x++) {
+                double dx = x - cx;
+                double sx = dx * cos + dy * sin + cx;
+                double sy = -dx * sin + dy * cos + cy;
+                int x0 = (int) Math.floor(sx);
+                int y0 = (int) Math.floor(sy);
+                int value;
+                if (x0 < 0 || y0 < 0 || x0 >= width - 1 || y0 >= height - 1) {
+                    value = 255;
+                } else {
+                    double fx = sx - x0;
+                    double fy = sy - y0;
+                    int i = y0 * width + x0;
+                    double top = (src[i] & 0xFF) * (1 - fx) + (src[i + 1] & 0xFF) * fx;
+                    double bottom = (src[i + width] & 0xFF) * (1 - fx) + (src[i + width + 1] & 0xFF) * fx;
+                    value = (int) (top * (1 - fy) + bottom * fy);
+                }
+                dst[y * width + x] = (byte) value;
+            }
+        }
+    }
+
+    //integral[(y + 1) * (width + 1) + (x + 1)] = sum of src over [0..x] x [0..y]. Sequential, one pass
+    private void buildIntegral(byte[] src, int width, int height) {
+        int stride = width + 1;
+        Arrays.fill(integral, 0, stride, 0);
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int row = (y + 1) * stride;
+            integral[row] = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += src[y * width + x] & 0xFF;
+                integral[row + x + 1] = integral[row - stride + x + 1] + rowSum;
+            }
+        }
+    }
+
+    private void threshold(byte[] src, int width, int height, int fromRow, int toRow) {
+        int stride = width + 1;
+        int half = Math.max(1, width / WINDOW_DIVISOR / 2);
+        for (int y = fromRow; y < toRow; y++) {
+            int y1 = Math.max(0, y - half);
+            int y2 = Math.min(height - 1, y + half);
+            for (int x = 0; x < width; x++) {
+                int x1 = Math.max(0, x - half);
+                int x2 = Math.min(width - 1, x + half);
+                long area = (long) (x2 - x1 + 1) * (y2 - y1 + 1);
+                int windowSum = integral[(y2 + 1) * stride + x2 + 1] - integral[y1 * stride + x2 + 1]
+                        - integral[(y2 + 1) * stride + x1] + integral[y1 * stride + x1];
+                //pixel * area < mean * (100 - t)%  without dividing
+                boolean ink = (long) (src[y * width + x] & 0xFF) * area * 100 < (long) windowSum * (100 - THRESHOLD_PERCENT);
+                output[y * width + x] = ink ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+    }
+
+    private interface StripeTask {
+        void run(int fromRow, int toRow);
+    }
+
+    //rows split into equal stripes, run on the executor and waited for
+    private void forStripes(int height, StripeTask task) {
+        if (executor == null || stripes == 1 || height < 2 * stripes) {
+            task.run(0, height);
+            return;
+        }
+        List<Callable<Void>> jobs = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            int from = height * i / stripes;
+            int to = height * (i + 1) / stripes;
+            jobs.add(() -> {
+                task.run(from, to);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : executor.invokeAll(jobs)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("preprocessing stripe failed", e.getCause());
+        }
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    //skew found in the last image in degrees, corrected when at least MIN_SKEW_DEGREES
+    public float getLastSkewDegrees() {
+        return lastSkewDegrees;
+    }
+}
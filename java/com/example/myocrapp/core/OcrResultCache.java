@@ -0,0 +1,69 @@
+package com.example.myocrapp.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * OCR results of recent captures keyed by their perceptual hash.
+ * A lookup matches the closest entry within maxDistance bits (Hamming distance), so a second tap on
+ * the same page finds the first result. Bounded, least recently used entries are evicted.
+ * A linear scan is fine for the few dozen entries this holds. Plain Java, thread safe.
+ */
+public class OcrResultCache<T> {
+
+    private final int maxDistance;
+    private final LinkedHashMap<Long, T> entries;
+    private long hits;
+    private long misses;
+
+    public OcrResultCache(int maxEntries, int maxDistance) {
+        this.maxDistance = maxDistance;
+        this.entries = new LinkedHashMap<Long, T>(maxEntries + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    //closest result within maxDistance, null if there is none
+    public synchronized T find(long hash) {
+        Long bestKey = null;
+        int bestDistance = maxDistance + 1;
+        for (Iterator<Long> it = entries.keySet().iterator(); it.hasNext() && bestDistance > 0; ) {
+            long key = it.next();
+            int distance = PerceptualHash.distance(key, hash);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestKey = key;
+            }
+        }
+        if (bestKey == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entries.get(bestKey); //get() also marks it as recently used
+    }
+
+    public synchronized void put(long hash, T result) {
+        entries.put(hash, result);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
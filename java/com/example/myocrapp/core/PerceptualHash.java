@@ -0,0 +1,54 @@
+package com.example.myocrapp.core;
+
+/**
+ * Difference hash (dHash) of an image: 64 bits that stay (nearly) the same for the same page
+ * photographed twice, despite small shifts, noise and exposure changes.
+ * The luma is averaged into a 9x8 grid, each bit says whether a cell is brighter than its right neighbour.
+ * Plain Java. The input can be any size, a small pre-scaled copy of the capture is enough.
+ */
+public final class PerceptualHash {
+
+    private static final int GRID_W = 9;
+    private static final int GRID_H = 8;
+
+    private PerceptualHash() {
+    }
+
+    //argb pixels, row by row
+    public static long dHash(int[] argb, int width, int height) {
+        if (width < GRID_W || height < GRID_H) {
+            throw new IllegalArgumentException("image too small for dHash: " + width + "x" + height);
+        }
+        long[] sums = new long[GRID_W * GRID_H];
+        int[] counts = new int[GRID_W * GRID_H];
+        for (int y = 0; y < height; y++) {
+            int cellRow = y * GRID_H / height * GRID_W;
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int p = argb[row + x];
+                int cell = cellRow + x * GRID_W / width;
+                //integer BT.601 luma
+                sums[cell] += (((p >> 16) & 0xFF) * 77 + ((p >> 8) & 0xFF) * 150 + (p & 0xFF) * 29) >> 8;
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        int bit = 0;
+        for (int cy = 0; cy < GRID_H; cy++) {
+            for (int cx = 0; cx < GRID_W - 1; cx++) {
+                int cell = cy * GRID_W + cx;
+                //compare means without dividing: a/ca > b/cb  <=>  a*cb > b*ca
+                if (sums[cell] * counts[cell + 1] > sums[cell + 1] * counts[cell]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
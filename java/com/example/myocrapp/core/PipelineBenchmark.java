@@ -0,0 +1,114 @@
+package com.example.myocrapp.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Desktop benchmark of the frame pipeline, runs on a plain JVM:
+ *
+ *   java com.example.myocrapp.core.PipelineBenchmark [recording.yuvrec | synthetic] [iterations] [max p95 ms] [checksum]
+ *
+ * Replays a recording (made with "Record analysis frames" in the app) or synthetic frames
+ * through FramePipeline with the BrightRegionDetector stub. The first iteration is warm-up
+ * and not measured. Exit code 1, so a script can fail on regressions, if
+ *   - the boxes differ from the expected checksum (built in for synthetic frames, given for a recording)
+ *     or between iterations
+ *   - with a p95 budget: a stage's exact p95 (sorted samples, not histogram buckets) exceeds it
+ */
+public class PipelineBenchmark {
+
+    private static final int MODEL_INPUT_SIZE = 300; //DetectionHandler.MODEL_INPUT_SIZE, core can't see the app classes
+    //boxes of one pass over the synthetic frames, update it only for an intended change of scheduler, converter or tracker
+    private static final long SYNTHETIC_CHECKSUM = -6700958795423729552L;
+
+    public static void main(String[] args) throws IOException {
+        String input = args.length > 0 ? args[0] : "synthetic";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        float maxP95Ms = args.length > 2 ? Float.parseFloat(args[2]) : -1f;
+        Long expectedChecksum = args.length > 3 ? Long.valueOf(Long.parseLong(args[3]))
+                : "synthetic".equals(input) ? Long.valueOf(SYNTHETIC_CHECKSUM) : null;
+
+        PipelineMetrics metrics = PipelineMetrics.get();
+        metrics.keepSamples(true);
+        Long checksum = null; //of the first measured pass, every pass has to match it
+        boolean checksumsDiffer = false;
+        long frames = 0;
+        long measuredNanos = 0;
+        DetectionScheduler lastScheduler = null;
+
+        for (int i = 0; i <= iterations; i++) {
+            boolean warmup = i == 0;
+            if (i == 1) {
+                metrics.reset(); //measured numbers start after warm-up
+            }
+            CountingSink sink = new CountingSink();
+            try (FrameSource source = open(input)) {
+                FramePipeline pipeline = new FramePipeline(source, new BrightRegionDetector(200, 64), sink, MODEL_INPUT_SIZE);
+                long start = System.nanoTime();
+                int n = pipeline.run();
+                if (!warmup) {
+                    measuredNanos += System.nanoTime() - start;
+                    frames += n;
+                    if (checksum == null) {
+                        checksum = sink.checksum;
+                    } else if (checksum != sink.checksum) {
+                        checksumsDiffer = true;
+                    }
+                    lastScheduler = pipeline.getScheduler();
+                }
+            }
+        }
+
+        System.out.println(metrics.summary());
+        if (lastScheduler != null) {
+            System.out.println(lastScheduler.summary());
+        }
+        System.out.println(String.format(Locale.US, "%d frames in %.1f ms, %.1f frames/s, checksum %d",
+                frames, measuredNanos / 1e6, measuredNanos == 0 ? 0.0 : frames * 1e9 / measuredNanos, checksum));
+
+        boolean failed = false;
+        if (checksumsDiffer) {
+            System.out.println("FAIL boxes differ between iterations, the pipeline is not deterministic");
+            failed = true;
+        }
+        if (checksum != null && expectedChecksum != null && !checksum.equals(expectedChecksum)) {
+            System.out.println("FAIL checksum " + checksum + ", expected " + expectedChecksum);
+            failed = true;
+        }
+        if (maxP95Ms > 0) {
+            for (PipelineMetrics.Stage stage : PipelineMetrics.Stage.values()) {
+                double p95 = metrics.exactPercentileMs(stage, 0.95);
+                if (p95 > maxP95Ms) {
+                    System.out.println(String.format(Locale.US, "FAIL %s p95 %.3f ms > %.3f ms", stage, p95, maxP95Ms));
+                    failed = true;
+                }
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static FrameSource open(String input) throws IOException {
+        if ("synthetic".equals(input)) {
+            return new SyntheticFrameSource(640, 480, 300, 90);
+        }
+        return new ReplayFrameSource(new File(input));
+    }
+
+    //sum over the box coordinates: same input has to give the same number on every run
+    private static class CountingSink implements ResultSink {
+        long checksum;
+
+        @Override
+        public void onResult(long timestampMs, List<DetectionBox> boxes, int frameWidth, int frameHeight, boolean inferred) {
+            for (int i = 0; i < boxes.size(); i++) {
+                DetectionBox box = boxes.get(i);
+                checksum = checksum * 31 + Math.round(box.left) + Math.round(box.top) * 7
+                        + Math.round(box.right) * 13 + Math.round(box.bottom) * 17;
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.myocrapp.core;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsibility:
+ * Per-stage latency histograms of the whole pipeline (camera frames, OCR, translation)
+ * Estimated frame drops of the analysis stream (STRATEGY_KEEP_ONLY_LATEST drops silently)
+ * Counts of large allocations (bitmaps, pixel buffers) done by the pipeline
+ * Text summary for the HUD and CSV export for offline comparison
+ *
+ * One process-wide instance, recording is lock-free. Benchmarks can keep every sample as well (keepSamples),
+ * for exact percentiles instead of histogram bucket bounds.
+ */
+public class PipelineMetrics {
+
+    public enum Stage {
+        YUV_CONVERSION,
+        INFERENCE,
+        OVERLAY_RENDER,
+        UI_POST,
+        OCR_PREPROCESS,
+        OCR,
+        LANGUAGE_ID,
+        TRANSLATION,
+        FIRST_TRANSLATION //language picked -> first translated block on screen
+    }
+
+    private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+    private static final int PERIOD_WINDOW = 31; //recent intervals the frame period is the median of
+    private static final int MIN_PERIOD_SAMPLES = 5;
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong framesArrived = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private volatile SampleLog[] samples; //null unless keepSamples(true), the app doesn't pay for it
+
+    //frame drop estimation, only touched by the camera thread
+    private long lastFrameNanos;
+    private final long[] recentIntervals = new long[PERIOD_WINDOW]; //ring buffer
+    private final long[] sortedIntervals = new long[PERIOD_WINDOW]; //scratch for the median, no allocation per frame
+    private int intervalCount;
+
+    private PipelineMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static PipelineMetrics get() {
+        return INSTANCE;
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+        SampleLog[] logs = samples;
+        if (logs != null) {
+            logs[stage.ordinal()].add(nanos);
+        }
+    }
+
+    //convenience for start = System.nanoTime() ... recordSince(stage, start)
+    public void recordSince(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    //benchmarks: keep every recorded latency from now on (until reset) for exactPercentileMs()
+    public void keepSamples(boolean keep) {
+        if (!keep) {
+            samples = null;
+            return;
+        }
+        SampleLog[] logs = new SampleLog[histograms.length];
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = new SampleLog();
+        }
+        samples = logs;
+    }
+
+    //p in 0..1, nearest rank over the sorted samples. -1 if samples aren't kept, 0 without samples
+    public double exactPercentileMs(Stage stage, double p) {
+        SampleLog[] logs = samples;
+        if (logs == null) {
+            return -1.0;
+        }
+        long[] sorted = logs[stage.ordinal()].sorted();
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1_000_000.0;
+    }
+
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    //camera thread, sensor timestamp of every frame the analyzer receives
+    //a gap of n frame periods means n - 1 frames were dropped before reaching us. The period is the median
+    //of recent intervals: the shortest one would count every jittered frame as a drop
+    public void onFrameArrived(long sensorTimestampNanos) {
+        framesArrived.incrementAndGet();
+        if (lastFrameNanos != 0) {
+            long interval = sensorTimestampNanos - lastFrameNanos;
+            if (interval > 0) {
+                recentIntervals[intervalCount % PERIOD_WINDOW] = interval;
+                intervalCount++;
+            }
+            long period = framePeriodNanos();
+            if (period > 0) {
+                long missed = Math.round((double) interval / period) - 1;
+                if (missed > 0) {
+                    framesDropped.addAndGet(missed);
+                }
+            }
+        }
+        lastFrameNanos = sensorTimestampNanos;
+    }
+
+    //0 until there are enough intervals to trust. Follows frame rate changes (low light) within a window
+    private long framePeriodNanos() {
+        int n = Math.min(intervalCount, PERIOD_WINDOW);
+        if (n < MIN_PERIOD_SAMPLES) {
+            return 0;
+        }
+        System.arraycopy(recentIntervals, 0, sortedIntervals, 0, n);
+        Arrays.sort(sortedIntervals, 0, n);
+        return sortedIntervals[n / 2];
+    }
+
+    public void countAllocation(long bytes) {
+        allocations.incrementAndGet();
+        allocatedBytes.addAndGet(bytes);
+    }
+
+    public long getFramesArrived() {
+        return framesArrived.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    //one line per stage that has data
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = histogram(stage);
+            if (h.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%-14s p50 %6.1f  p95 %6.1f  max %6.1f ms  n=%d%n",
+                    stage.name().toLowerCase(Locale.US), h.percentileMs(0.5), h.percentileMs(0.95), h.getMaxMs(), h.getCount()));
+        }
+        sb.append(String.format(Locale.US, "frames %d  dropped %d  allocs %d (%d KB)",
+                framesArrived.get(), framesDropped.get(), allocations.get(), allocatedBytes.get() / 1024));
+        return sb.toString();
+    }
+
+    public void exportCsv(File file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            out.write("stage,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram h = histogram(stage);
+                out.write(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+                        stage.name(), h.getCount(), h.getMeanMs(), h.percentileMs(0.5),
+                        h.percentileMs(0.9), h.percentileMs(0.99), h.getMaxMs()));
+            }
+            out.write(String.format(Locale.US, "frames_arrived,%d\n", framesArrived.get()));
+            out.write(String.format(Locale.US, "frames_dropped,%d\n", framesDropped.get()));
+            out.write(String.format(Locale.US, "allocations,%d\n", allocations.get()));
+            out.write(String.format(Locale.US, "allocated_bytes,%d\n", allocatedBytes.get()));
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+        framesArrived.set(0);
+        framesDropped.set(0);
+        allocations.set(0);
+        allocatedBytes.set(0);
+        if (samples != null) {
+            keepSamples(true);
+        }
+    }
+
+    //all latencies of one stage, grows by doubling
+    private static class SampleLog {
+        private long[] nanos = new long[1024];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
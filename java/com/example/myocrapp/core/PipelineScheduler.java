@@ -0,0 +1,90 @@
+package com.example.myocrapp.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class responsibility:
+ * Owning the worker stages of the app (live analysis, capture, capture OCR, disk io)
+ * Giving user-triggered capture work priority: live detection pauses while a capture is processed
+ * Cancelling waiting work on lifecycle changes and shutting all stages down in a fixed order
+ * Queue depths and wait times for the HUD
+ *
+ * Plain Java, thread safe.
+ */
+public class PipelineScheduler {
+
+    //a capture that never reports back must not stop live detection for good
+    private static final long MAX_USER_WORK_MS = 5000;
+
+    private final List<PipelineStage> stages = new ArrayList<>();
+    private final Set<Long> userWork = new HashSet<>(); //tokens of the captures in progress
+    private long nextUserWorkToken;
+    private long userWorkSinceMs; //last beginUserWork()
+
+    //created in the order they are shut down
+    public synchronized PipelineStage addStage(String name, int threads, int capacity, boolean cancellable) {
+        PipelineStage stage = new PipelineStage(name, threads, capacity, cancellable);
+        stages.add(stage);
+        return stage;
+    }
+
+    //capture tapped: live detection pauses until endUserWork() with the returned token.
+    //Each capture gets its own timeout, counted from its tap
+    public synchronized long beginUserWork() {
+        long token = ++nextUserWorkToken;
+        userWork.add(token);
+        userWorkSinceMs = System.currentTimeMillis();
+        return token;
+    }
+
+    //tokens already dropped by cancelPending() or the timeout are ignored, a late callback of an old capture
+    //doesn't end the pause of a newer one
+    public synchronized void endUserWork(long token) {
+        userWork.remove(token);
+    }
+
+    //asked by the analyzer for every frame
+    public synchronized boolean isLivePaused() {
+        if (!userWork.isEmpty() && System.currentTimeMillis() - userWorkSinceMs > MAX_USER_WORK_MS) {
+            userWork.clear(); //lost endUserWork(), e.g. a callback that never came
+        }
+        return !userWork.isEmpty();
+    }
+
+    //e.g. onPause: work queued for a screen nobody looks at is dropped
+    public synchronized int cancelPending() {
+        int count = 0;
+        for (PipelineStage stage : stages) {
+            count += stage.cancelPending();
+        }
+        userWork.clear();
+        return count;
+    }
+
+    //onDestroy: stages in creation order, each waits for its running task, so native resources can be closed afterwards.
+    //returns false if a stage didn't finish in time
+    public boolean shutdown(long timeoutMsPerStage) {
+        List<PipelineStage> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(stages);
+            userWork.clear();
+        }
+        boolean clean = true;
+        for (PipelineStage stage : snapshot) {
+            clean &= stage.shutdown(timeoutMsPerStage);
+        }
+        return clean;
+    }
+
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (PipelineStage stage : stages) {
+            sb.append(stage.summary()).append('\n');
+        }
+        sb.append(!userWork.isEmpty() ? "live detection paused (capture)" : "live detection running");
+        return sb.toString();
+    }
+}
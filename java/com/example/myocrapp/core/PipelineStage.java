@@ -0,0 +1,104 @@
+package com.example.myocrapp.core;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the pipeline: a fixed number of named worker threads behind a bounded queue.
+ * A full queue rejects new work (execute() throws RejectedExecutionException), the caller decides what to drop.
+ * Waiting tasks of a cancellable stage can be dropped (cancelPending), tasks of the other stages always run,
+ * they own resources (camera frames, unsaved captures) that only the task itself releases.
+ * Queue depth, wait time (queued -> started) and rejected/cancelled tasks are recorded.
+ * Plain Java.
+ */
+public class PipelineStage implements Executor {
+
+    private final String name;
+    private final boolean cancellable;
+    private final ThreadPoolExecutor executor;
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private volatile int maxDepth;
+
+    public PipelineStage(String name, int threads, int capacity, boolean cancellable) {
+        this.name = name;
+        this.cancellable = cancellable;
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacity),
+                runnable -> new Thread(runnable, "pipeline-" + name));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long queuedAt = System.nanoTime();
+        Runnable timed = () -> {
+            waitTimes.recordNanos(System.nanoTime() - queuedAt);
+            task.run();
+        };
+        try {
+            executor.execute(timed);
+        } catch (RejectedExecutionException full) {
+            rejected.incrementAndGet();
+            throw full;
+        }
+        int depth = executor.getQueue().size();
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    //drops everything still waiting (cancellable stages only), running tasks finish. Returns the number of dropped tasks
+    public int cancelPending() {
+        if (!cancellable) {
+            return 0;
+        }
+        int count = executor.getQueue().size();
+        executor.getQueue().clear();
+        cancelled.addAndGet(count);
+        return count;
+    }
+
+    //no new tasks, waiting ones are dropped if the stage is cancellable, blocks until running ones are done or the timeout passed
+    public boolean shutdown(long timeoutMs) {
+        cancelPending();
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    public String summary() {
+        return String.format(Locale.US, "%-9s queue %d (max %d) active %d  wait p50 %.1f p95 %.1f ms  rejected %d cancelled %d",
+                name, getQueueDepth(), maxDepth, getActiveCount(),
+                waitTimes.percentileMs(0.5), waitTimes.percentileMs(0.95), rejected.get(), cancelled.get());
+    }
+}
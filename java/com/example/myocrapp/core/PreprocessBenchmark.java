@@ -0,0 +1,154 @@
+package com.example.myocrapp.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Desktop benchmark of the OCR preprocessing, runs on a plain JVM:
+ *
+ *   java com.example.myocrapp.core.PreprocessBenchmark [recording.yuvrec | synthetic] [iterations] [threads]
+ *
+ * Runs OcrPreprocessor single threaded and on stripes over synthetic skewed pages (known angle)
+ * or the frames of a recording, and prints time per image, the skew found and the ink ratio.
+ * ML Kit doesn't run on a desktop JVM: whether recognition gets faster or better is measured
+ * on the device (tools menu, OCR preprocessing on/off shows both modes side by side).
+ * Exits with 1 if the skew of a synthetic page is missed by more than a degree or the
+ * parallel output differs from the single threaded one.
+ */
+public class PreprocessBenchmark {
+
+    private static final int PAGE_WIDTH = 1600;
+    private static final int PAGE_HEIGHT = 1200;
+    private static final float[] SYNTHETIC_SKEWS = {0f, 2.5f, -4f, 7f};
+    private static final int MAX_RECORDED_FRAMES = 20;
+
+    public static void main(String[] args) throws IOException {
+        String input = args.length > 0 ? args[0] : "synthetic";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<int[]> images = new ArrayList<>();
+        List<int[]> sizes = new ArrayList<>();
+        if ("synthetic".equals(input)) {
+            for (float skew : SYNTHETIC_SKEWS) {
+                images.add(page(skew, new Random(7)));
+                sizes.add(new int[]{PAGE_WIDTH, PAGE_HEIGHT});
+            }
+        } else {
+            load(new File(input), images, sizes);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        boolean failed = false;
+        try {
+            OcrPreprocessor serial = new OcrPreprocessor(null, 1);
+            OcrPreprocessor parallel = new OcrPreprocessor(executor, threads);
+            long serialNanos = 0;
+            long parallelNanos = 0;
+            for (int i = 0; i < images.size(); i++) {
+                int[] image = images.get(i);
+                int width = sizes.get(i)[0];
+                int height = sizes.get(i)[1];
+
+                //warm-up, then measure
+                serial.process(image, width, height);
+                parallel.process(image, width, height);
+                long start = System.nanoTime();
+                for (int n = 0; n < iterations; n++) {
+                    serial.process(image, width, height);
+                }
+                long serialImage = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int n = 0; n < iterations; n++) {
+                    parallel.process(image, width, height);
+                }
+                long parallelImage = System.nanoTime() - start;
+                serialNanos += serialImage;
+                parallelNanos += parallelImage;
+
+                int[] a = serial.process(image, width, height);
+                int[] b = parallel.process(image, width, height);
+                int ink = 0;
+                boolean same = true;
+                for (int p = 0; p < width * height; p++) {
+                    ink += a[p] == 0xFF000000 ? 1 : 0;
+                    same &= a[p] == b[p];
+                }
+                float skew = serial.getLastSkewDegrees();
+                String expected = "";
+                if ("synthetic".equals(input)) {
+                    float truth = SYNTHETIC_SKEWS[i];
+                    expected = String.format(Locale.US, " (drawn %.1f)", truth);
+                    if (Math.abs(skew - truth) > 1f) {
+                        System.out.println("FAIL skew " + skew + " for a page drawn at " + truth);
+                        failed = true;
+                    }
+                }
+                if (!same) {
+                    System.out.println("FAIL parallel output differs from single threaded, image " + i);
+                    failed = true;
+                }
+                System.out.println(String.format(Locale.US,
+                        "image %d %dx%d | 1 thread %.1f ms | %d threads %.1f ms | skew %.1f%s | ink %.1f%%",
+                        i, width, height, serialImage / 1e6 / iterations, threads, parallelImage / 1e6 / iterations,
+                        skew, expected, 100.0 * ink / (width * height)));
+            }
+            System.out.println(String.format(Locale.US, "%d images x %d: 1 thread %.1f ms/image, %d threads %.1f ms/image",
+                    images.size(), iterations, serialNanos / 1e6 / iterations / images.size(),
+                    threads, parallelNanos / 1e6 / iterations / images.size()));
+        } finally {
+            executor.shutdown();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    //recorded analysis frames, converted like the app does
+    private static void load(File file, List<int[]> images, List<int[]> sizes) throws IOException {
+        YuvToRgbConverter converter = new YuvToRgbConverter();
+        try (ReplayFrameSource source = new ReplayFrameSource(file)) {
+            YuvFrame frame;
+            while (images.size() < MAX_RECORDED_FRAMES && (frame = source.next()) != null) {
+                int[] argb = converter.convert(frame.y, frame.yRowStride, frame.yPixelStride,
+                        frame.u, frame.v, frame.uvRowStride, frame.uvPixelStride,
+                        frame.width, frame.height, frame.rotationDegrees, 1);
+                int size = converter.getOutputWidth() * converter.getOutputHeight();
+                images.add(Arrays.copyOf(argb, size));
+                sizes.add(new int[]{converter.getOutputWidth(), converter.getOutputHeight()});
+            }
+        }
+    }
+
+    //word-like dark blocks on paper rotated by skew degrees, with a lighting gradient and noise
+    private static int[] page(float skew, Random random) {
+        double radians = Math.toRadians(skew);
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        int[] argb = new int[PAGE_WIDTH * PAGE_HEIGHT];
+        for (int y = 0; y < PAGE_HEIGHT; y++) {
+            for (int x = 0; x < PAGE_WIDTH; x++) {
+                //page coordinates of this pixel
+                double dx = x - PAGE_WIDTH / 2.0;
+                double dy = y - PAGE_HEIGHT / 2.0;
+                int px = (int) (dx * cos + dy * sin) + PAGE_WIDTH / 2;
+                int py = (int) (-dx * sin + dy * cos) + PAGE_HEIGHT / 2;
+                boolean margin = px < 120 || px > PAGE_WIDTH - 120 || py < 100 || py > PAGE_HEIGHT - 100;
+                boolean textLine = py % 40 >= 12 && py % 40 < 30;
+                boolean letter = (px / 9) % 7 != 6 && (px / 3) % 3 != 2; //words of letters
+                int paper = 235 - 90 * x / PAGE_WIDTH; //shadow towards the right edge
+                int v = !margin && textLine && letter ? paper - 130 : paper;
+                v = Math.max(0, Math.min(255, v + random.nextInt(17) - 8));
+                argb[y * PAGE_WIDTH + x] = 0xFF000000 | v << 16 | v << 8 | v;
+            }
+        }
+        return argb;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.myocrapp.core;
+
+/**
+ * Maps analysis frame coordinates to view coordinates the same way PreviewView
+ * places the camera stream: FILL_* scales until the view is covered and crops,
+ * FIT_* scales until the frame fits and letterboxes. START/CENTER/END select
+ * which side is kept.
+ *
+ * The frame is expected upright already (YuvToRgbConverter applies the rotation),
+ * so only scale, crop offset and optional mirroring are needed here.
+ */
+public class PreviewMapping {
+
+    public static final int ALIGN_START = 0;
+    public static final int ALIGN_CENTER = 1;
+    public static final int ALIGN_END = 2;
+
+    private float scale = 1f;
+    private float offsetX;
+    private float offsetY;
+    private float viewWidth;
+    private boolean mirrored;
+
+    public void update(int frameWidth, int frameHeight, int viewWidth, int viewHeight,
+                       boolean fill, int align, boolean mirrored) {
+        this.viewWidth = viewWidth;
+        this.mirrored = mirrored;
+        if (frameWidth <= 0 || frameHeight <= 0 || viewWidth <= 0 || viewHeight <= 0) {
+            scale = 1f;
+            offsetX = 0f;
+            offsetY = 0f;
+            return;
+        }
+
+        float scaleX = (float) viewWidth / frameWidth;
+        float scaleY = (float) viewHeight / frameHeight;
+        scale = fill ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+
+        //leftover (negative when cropped) is split depending on alignment
+        float extraX = viewWidth - frameWidth * scale;
+        float extraY = viewHeight - frameHeight * scale;
+        offsetX = alignOffset(extraX, align);
+        offsetY = alignOffset(extraY, align);
+    }
+
+    private static float alignOffset(float extra, int align) {
+        switch (align) {
+            case ALIGN_START: return 0f;
+            case ALIGN_END: return extra;
+            default: return extra / 2f;
+        }
+    }
+
+    public float mapX(float frameX) {
+        float x = frameX * scale + offsetX;
+        return mirrored ? viewWidth - x : x;
+    }
+
+    public float mapY(float frameY) {
+        return frameY * scale + offsetY;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+}
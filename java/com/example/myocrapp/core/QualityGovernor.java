@@ -0,0 +1,157 @@
+package com.example.myocrapp.core;
+
+import java.util.Locale;
+
+/**
+ * Class responsibility:
+ * Picking the analysis quality tier: target resolution (derived from the model input size) and detection rate
+ * Picking the analysis output format: YUV with our converter, or RGBA_8888 converted by CameraX
+ * Stepping down when frames cost more than the tier allows, when the device heats up or the battery is low,
+ * and back up only after a longer stretch with headroom (hysteresis, no flapping)
+ *
+ * Only the conversion scales with the analysis resolution, inference always runs on the fixed model input,
+ * so the two costs are passed separately.
+ *
+ * Plain Java. evaluate() is called about once per second with the measured costs and device state,
+ * a changed tier or format means the analysis use case has to be rebound.
+ */
+public class QualityGovernor {
+
+    //same levels as android.os.PowerManager.THERMAL_STATUS_*
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+
+    private static final float BUDGET_SHARE = 0.5f; //a frame may use half of the interval at the tier's max rate
+    private static final int DOWN_AFTER = 3; //evaluations over budget before stepping down
+    private static final long UP_AFTER_MS = 10_000; //headroom needed this long before stepping up
+    private static final float UP_HEADROOM = 0.5f; //estimated cost at the higher tier must stay under half its budget
+    private static final float RGBA_SWITCH_MS = 3f; //our YUV conversion costs more than this: let CameraX do it
+
+    public static final class Tier {
+        public final String name;
+        public final int width; //landscape sensor orientation, as CameraX expects the target size
+        public final int height;
+        public final float maxRateHz;
+
+        Tier(String name, int shortSide, float maxRateHz) {
+            this.name = name;
+            this.height = shortSide;
+            this.width = (shortSide * 4 / 3 + 15) / 16 * 16; //4:3, multiple of 16
+            this.maxRateHz = maxRateHz;
+        }
+
+        float budgetMs() {
+            return 1000f / maxRateHz * BUDGET_SHARE;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %dx%d %.0f Hz", name, width, height, maxRateHz);
+        }
+    }
+
+    private final Tier[] tiers; //best first
+    private int tier;
+    private boolean rgba;
+    private int overBudget;
+    private long headroomSinceMs = -1;
+    private String reason = "start";
+    private float lastCostMs;
+    private int lastThermal;
+
+    //tiers never go below the model input: more pixels than that only help the box accuracy
+    public QualityGovernor(int modelInputSize) {
+        tiers = new Tier[] {
+                new Tier("high", Math.max(480, modelInputSize * 8 / 5), 10f),
+                new Tier("medium", Math.max(360, modelInputSize * 6 / 5), 6f),
+                new Tier("low", modelInputSize, 3f)
+        };
+    }
+
+    //conversionMs: frame -> model input at this tier's resolution, inferenceMs: detector on the model input.
+    //returns true if tier or format changed
+    public synchronized boolean evaluate(float conversionMs, float inferenceMs, int thermalStatus,
+                                         boolean batteryLow, long nowMs) {
+        float frameCostMs = conversionMs + inferenceMs;
+        lastCostMs = frameCostMs;
+        lastThermal = thermalStatus;
+        int oldTier = tier;
+        boolean oldRgba = rgba;
+
+        //device state sets a floor, applied at once
+        int floor = 0;
+        if (thermalStatus >= THERMAL_SEVERE) {
+            floor = tiers.length - 1;
+        } else if (thermalStatus >= THERMAL_MODERATE || batteryLow) {
+            floor = 1;
+        }
+        if (tier < floor) {
+            tier = floor;
+            reason = thermalStatus >= THERMAL_MODERATE ? "thermal " + thermalStatus : "battery low";
+        }
+
+        //measured cost over the tier's budget for a while: one step down
+        if (frameCostMs > tiers[tier].budgetMs()) {
+            overBudget++;
+            headroomSinceMs = -1;
+            if (overBudget >= DOWN_AFTER && tier < tiers.length - 1) {
+                tier++;
+                overBudget = 0;
+                reason = String.format(Locale.US, "cost %.0f ms over budget", frameCostMs);
+            }
+        } else {
+            overBudget = 0;
+            //estimate for the next tier up: conversion grows with the pixel count, inference stays the same
+            if (tier > floor && frameCostMs > 0f) {
+                Tier up = tiers[tier - 1];
+                float estimate = conversionMs * pixels(up) / pixels(tiers[tier]) + inferenceMs;
+                if (estimate < up.budgetMs() * UP_HEADROOM) {
+                    if (headroomSinceMs < 0) {
+                        headroomSinceMs = nowMs;
+                    } else if (nowMs - headroomSinceMs >= UP_AFTER_MS) {
+                        tier--;
+                        headroomSinceMs = -1;
+                        reason = "headroom";
+                    }
+                } else {
+                    headroomSinceMs = -1;
+                }
+            }
+        }
+
+        //once our conversion shows up in the budget, CameraX's native conversion is cheaper. Sticky:
+        //in RGBA mode there is no YUV conversion left to measure
+        if (!rgba && conversionMs > RGBA_SWITCH_MS) {
+            rgba = true;
+            reason = String.format(Locale.US, "yuv conversion %.1f ms", conversionMs);
+        }
+
+        if (tier != oldTier) {
+            headroomSinceMs = -1;
+        }
+        return tier != oldTier || rgba != oldRgba;
+    }
+
+    private static float pixels(Tier tier) {
+        return (float) tier.width * tier.height;
+    }
+
+    public synchronized Tier getTier() {
+        return tiers[tier];
+    }
+
+    public synchronized boolean isRgba() {
+        return rgba;
+    }
+
+    //e.g. while frames are recorded, FrameRecorder needs YUV planes
+    public synchronized void setRgba(boolean rgba) {
+        this.rgba = rgba;
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "quality %s %s | %.1f ms/frame | thermal %d | %s",
+                tiers[tier], rgba ? "rgba" : "yuv", lastCostMs, lastThermal, reason);
+    }
+}
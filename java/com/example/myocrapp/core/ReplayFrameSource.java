@@ -0,0 +1,76 @@
+package com.example.myocrapp.core;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * FrameSource reading frames written by FrameRecorder.
+ * Plane buffers are reused between frames, so replay doesn't allocate per frame either.
+ */
+public class ReplayFrameSource implements FrameSource {
+
+    private final DataInputStream in;
+    private byte[] yBytes = new byte[0];
+    private byte[] uBytes = new byte[0];
+    private byte[] vBytes = new byte[0];
+
+    public ReplayFrameSource(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        if (in.readInt() != FrameRecorder.MAGIC) {
+            in.close();
+            throw new IOException("not a frame recording: " + file);
+        }
+        int version = in.readInt();
+        if (version != FrameRecorder.VERSION) {
+            in.close();
+            throw new IOException("unsupported recording version " + version + ": " + file);
+        }
+    }
+
+    @Override
+    public YuvFrame next() throws IOException {
+        int width;
+        try {
+            width = in.readInt();
+        } catch (EOFException end) {
+            return null;
+        }
+        int height = in.readInt();
+        int rotation = in.readInt();
+        long timestampNanos = in.readLong();
+        int yRowStride = in.readInt();
+        int yPixelStride = in.readInt();
+        int uvRowStride = in.readInt();
+        int uvPixelStride = in.readInt();
+
+        ByteBuffer y = readPlane(yBytes);
+        yBytes = y.array();
+        ByteBuffer u = readPlane(uBytes);
+        uBytes = u.array();
+        ByteBuffer v = readPlane(vBytes);
+        vBytes = v.array();
+
+        return new YuvFrame(y, u, v, yRowStride, yPixelStride, uvRowStride, uvPixelStride,
+                width, height, rotation, timestampNanos);
+    }
+
+    //plane bytes in buffer (or a larger one if it is too small), limited to the plane length
+    private ByteBuffer readPlane(byte[] buffer) throws IOException {
+        int length = in.readInt();
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        in.readFully(buffer, 0, length);
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.myocrapp.core;
+
+import java.util.List;
+
+/**
+ * Receives the (tracked) boxes of every frame. inferred is false for frames the
+ * scheduler skipped, their boxes are predicted by the tracker.
+ */
+public interface ResultSink {
+
+    void onResult(long timestampMs, List<DetectionBox> boxes, int frameWidth, int frameHeight, boolean inferred);
+}
@@ -0,0 +1,70 @@
+package com.example.myocrapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deterministic FrameSource for desktop tests and benchmarks: a bright square on a
+ * dark background, moving for a while, then standing still (to exercise the scheduler).
+ * Planes use padded rows and interleaved chroma (pixel stride 2) like many devices do.
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    private static final int ROW_PADDING = 32;
+    private static final long FRAME_INTERVAL_NANOS = 33_333_333L; //30 fps
+
+    private final int width;
+    private final int height;
+    private final int frameCount;
+    private final int rotationDegrees;
+    private final byte[] yBytes;
+    private final byte[] uvBytes;
+    private final int yRowStride;
+    private final int uvRowStride;
+    private int index;
+
+    public SyntheticFrameSource(int width, int height, int frameCount, int rotationDegrees) {
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
+        this.rotationDegrees = rotationDegrees;
+        yRowStride = width + ROW_PADDING;
+        uvRowStride = width + ROW_PADDING;
+        yBytes = new byte[yRowStride * height];
+        uvBytes = new byte[uvRowStride * (height / 2)];
+        //neutral chroma, gray picture
+        java.util.Arrays.fill(uvBytes, (byte) 128);
+    }
+
+    @Override
+    public YuvFrame next() {
+        if (index >= frameCount) {
+            return null;
+        }
+        //first half moving, second half static
+        int step = Math.min(index, frameCount / 2);
+        int size = Math.min(width, height) / 4;
+        int left = (step * 4) % Math.max(1, width - size);
+        int top = (height - size) / 2;
+
+        for (int row = 0; row < height; row++) {
+            int offset = row * yRowStride;
+            for (int col = 0; col < width; col++) {
+                boolean inside = col >= left && col < left + size && row >= top && row < top + size;
+                yBytes[offset + col] = (byte) (inside ? 235 : 40);
+            }
+        }
+
+        //U at even, V at odd offsets of the same buffer (NV12 style)
+        ByteBuffer y = ByteBuffer.wrap(yBytes);
+        ByteBuffer u = ByteBuffer.wrap(uvBytes, 0, uvBytes.length - 1).slice();
+        ByteBuffer v = ByteBuffer.wrap(uvBytes, 1, uvBytes.length - 1).slice();
+        long timestamp = (index + 1) * FRAME_INTERVAL_NANOS;
+        index++;
+
+        return new YuvFrame(y, u, v, yRowStride, 1, uvRowStride, 2, width, height, rotationDegrees, timestamp);
+    }
+
+    @Override
+    public void close() {
+    }
+}
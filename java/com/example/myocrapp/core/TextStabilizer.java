@@ -0,0 +1,100 @@
+package com.example.myocrapp.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class responsibility:
+ * Fusing OCR results of consecutive frames so live text stops flickering
+ * Keeps the lines of the last few frames and votes per line position
+ * The shown line only changes when another reading gets more votes
+ *
+ * Plain Java. Lines are compared whitespace-normalized.
+ */
+public class TextStabilizer {
+
+    private final int window;
+    private final ArrayDeque<List<String>> frames = new ArrayDeque<>();
+    private List<String> shown = new ArrayList<>();
+
+    public TextStabilizer(int window) {
+        this.window = Math.max(1, window);
+    }
+
+    //adds the lines of one frame, returns the fused text
+    public synchronized String add(List<String> lines) {
+        List<String> normalized = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            String n = normalize(line);
+            if (!n.isEmpty()) {
+                normalized.add(n);
+            }
+        }
+        frames.addLast(normalized);
+        if (frames.size() > window) {
+            frames.removeFirst();
+        }
+
+        int lineCount = voteLineCount();
+        List<String> fused = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            fused.add(voteLine(i));
+        }
+        shown = fused;
+        return String.join("\n", fused);
+    }
+
+    //most frequent line count, ties go to the larger count (a line lost in one frame shouldn't vanish)
+    private int voteLineCount() {
+        Map<Integer, Integer> votes = new HashMap<>();
+        int best = 0;
+        int bestVotes = 0;
+        for (List<String> frame : frames) {
+            int count = frame.size();
+            int v = votes.merge(count, 1, Integer::sum);
+            if (v > bestVotes || (v == bestVotes && count > best)) {
+                best = count;
+                bestVotes = v;
+            }
+        }
+        return best;
+    }
+
+    private String voteLine(int index) {
+        Map<String, Integer> votes = new HashMap<>();
+        String latest = null;
+        for (List<String> frame : frames) {
+            if (index < frame.size()) {
+                latest = frame.get(index);
+                votes.merge(latest, 1, Integer::sum);
+            }
+        }
+        if (latest == null) {
+            return "";
+        }
+
+        //hysteresis: the current line stays until something beats it
+        String current = index < shown.size() ? shown.get(index) : null;
+        String best = current != null && votes.containsKey(current) ? current : latest;
+        int bestVotes = votes.getOrDefault(best, 0);
+        for (Map.Entry<String, Integer> entry : votes.entrySet()) {
+            if (entry.getValue() > bestVotes) {
+                best = entry.getKey();
+                bestVotes = entry.getValue();
+            }
+        }
+        return best;
+    }
+
+    private static String normalize(String line) {
+        return line.trim().replaceAll("\\s+", " ");
+    }
+
+    public synchronized void reset() {
+        frames.clear();
+        shown = new ArrayList<>();
+    }
+}
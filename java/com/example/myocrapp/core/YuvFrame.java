@@ -0,0 +1,48 @@
+package com.example.myocrapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One YUV_420_888 frame without android types: the three planes with their strides,
+ * size, rotation and sensor timestamp. Mirrors what CameraX's ImageProxy exposes,
+ * so recorded and live frames go through the same code.
+ * An RGBA_8888 analysis frame (QualityGovernor) has only one plane: y holds the RGBA bytes, u and v are null.
+ */
+public class YuvFrame {
+
+    public final ByteBuffer y;
+    public final ByteBuffer u;
+    public final ByteBuffer v;
+    public final int yRowStride;
+    public final int yPixelStride;
+    public final int uvRowStride;
+    public final int uvPixelStride;
+    public final int width;
+    public final int height;
+    public final int rotationDegrees;
+    public final long timestampNanos;
+
+    public YuvFrame(ByteBuffer y, ByteBuffer u, ByteBuffer v,
+                    int yRowStride, int yPixelStride, int uvRowStride, int uvPixelStride,
+                    int width, int height, int rotationDegrees, long timestampNanos) {
+        this.y = y;
+        this.u = u;
+        this.v = v;
+        this.yRowStride = yRowStride;
+        this.yPixelStride = yPixelStride;
+        this.uvRowStride = uvRowStride;
+        this.uvPixelStride = uvPixelStride;
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.timestampNanos = timestampNanos;
+    }
+
+    public boolean isRgba() {
+        return u == null;
+    }
+
+    public long timestampMs() {
+        return timestampNanos / 1_000_000L;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.myocrapp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Class responsibility:
+ * Converting YUV_420_888 camera planes directly into ARGB pixels
+ * Handling row stride and pixel stride (padded planes, NV12/NV21/I420 layouts)
+ * RGBA_8888 frames (CameraX converts them natively) only get reordered, no color math
+ * Rotating and optionally downscaling in the same pass
+ * Reusing its output buffer between frames
+ *
+ * Plain Java on purpose (no android imports) so it can run on a desktop JVM
+ * against recorded plane dumps.
+ */
+public class YuvToRgbConverter {
+
+    private int[] argb = new int[0]; //reused between frames, only grows
+    private int outputWidth;
+    private int outputHeight;
+
+    //Converts one frame. Returns the internal pixel buffer, valid until the next call.
+    //sampleStep 1 = full resolution, 2 = half width/height, ...
+    public int[] convert(ByteBuffer yPlane, int yRowStride, int yPixelStride,
+                         ByteBuffer uPlane, ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                         int width, int height, int rotationDegrees, int sampleStep) {
+        sampleStep = Math.max(1, sampleStep);
+        rotationDegrees = ((rotationDegrees % 360) + 360) % 360;
+        prepareOutput(width, height, rotationDegrees, sampleStep);
+        int scaledWidth = width / sampleStep;
+        int scaledHeight = height / sampleStep;
+
+        //absolute gets only, the caller's buffer positions stay untouched
+        int yBase = yPlane.position();
+        int uBase = uPlane.position();
+        int vBase = vPlane.position();
+
+        for (int sy = 0; sy < scaledHeight; sy++) {
+            int srcY = sy * sampleStep;
+            int yRow = yBase + srcY * yRowStride;
+            int uvRow = (srcY >> 1) * uvRowStride;
+
+            for (int sx = 0; sx < scaledWidth; sx++) {
+                int srcX = sx * sampleStep;
+                int uvOffset = uvRow + (srcX >> 1) * uvPixelStride;
+
+                int yValue = yPlane.get(yRow + srcX * yPixelStride) & 0xFF;
+                int u = (uPlane.get(uBase + uvOffset) & 0xFF) - 128;
+                int v = (vPlane.get(vBase + uvOffset) & 0xFF) - 128;
+
+                argb[outputIndex(sx, sy, scaledWidth, scaledHeight, rotationDegrees)] = yuvToArgb(yValue, u, v);
+            }
+        }
+        return argb;
+    }
+
+    //Same for an RGBA_8888 frame (ImageAnalysis.OUTPUT_IMAGE_FORMAT_RGBA_8888): one plane, pixelStride 4
+    public int[] convertRgba(ByteBuffer rgbaPlane, int rowStride, int pixelStride,
+                             int width, int height, int rotationDegrees, int sampleStep) {
+        sampleStep = Math.max(1, sampleStep);
+        rotationDegrees = ((rotationDegrees % 360) + 360) % 360;
+        prepareOutput(width, height, rotationDegrees, sampleStep);
+        int scaledWidth = width / sampleStep;
+        int scaledHeight = height / sampleStep;
+
+        int base = rgbaPlane.position();
+        for (int sy = 0; sy < scaledHeight; sy++) {
+            int row = base + sy * sampleStep * rowStride;
+            for (int sx = 0; sx < scaledWidth; sx++) {
+                int offset = row + sx * sampleStep * pixelStride;
+                int r = rgbaPlane.get(offset) & 0xFF;
+                int g = rgbaPlane.get(offset + 1) & 0xFF;
+                int b = rgbaPlane.get(offset + 2) & 0xFF;
+                argb[outputIndex(sx, sy, scaledWidth, scaledHeight, rotationDegrees)] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        return argb;
+    }
+
+    private void prepareOutput(int width, int height, int rotationDegrees, int sampleStep) {
+        int scaledWidth = width / sampleStep;
+        int scaledHeight = height / sampleStep;
+        boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+        outputWidth = swap ? scaledHeight : scaledWidth;
+        outputHeight = swap ? scaledWidth : scaledHeight;
+
+        int size = outputWidth * outputHeight;
+        if (argb.length < size) {
+            argb = new int[size];
+            PipelineMetrics.get().countAllocation(4L * size);
+        }
+    }
+
+    //position of source pixel (sx, sy) in the rotated output
+    private int outputIndex(int sx, int sy, int scaledWidth, int scaledHeight, int rotationDegrees) {
+        switch (rotationDegrees) {
+            case 90:
+                return sx * outputWidth + (scaledHeight - 1 - sy);
+            case 180:
+                return (scaledHeight - 1 - sy) * outputWidth + (scaledWidth - 1 - sx);
+            case 270:
+                return (scaledWidth - 1 - sx) * outputWidth + sy;
+            default:
+                return sy * outputWidth + sx;
+        }
+    }
+
+    //BT.601 full range, same as the JPEG path it replaces. Fixed point (x1024) to avoid float math per pixel
+    static int yuvToArgb(int y, int u, int v) {
+        int y1024 = y << 10;
+        int r = (y1024 + 1436 * v) >> 10;
+        int g = (y1024 - 352 * u - 731 * v) >> 10;
+        int b = (y1024 + 1815 * u) >> 10;
+
+        r = r < 0 ? 0 : (r > 255 ? 255 : r);
+        g = g < 0 ? 0 : (g > 255 ? 255 : g);
+        b = b < 0 ? 0 : (b > 255 ? 255 : b);
+
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    //Largest step that keeps the shorter side at or above minShortSide (e.g. the model input size)
+    public static int sampleStepFor(int width, int height, int minShortSide) {
+        int shortSide = Math.min(width, height);
+        if (minShortSide <= 0 || shortSide <= minShortSide) {
+            return 1;
+        }
+        return Math.max(1, shortSide / minShortSide);
+    }
+
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+}
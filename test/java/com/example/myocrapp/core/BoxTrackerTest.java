@@ -0,0 +1,77 @@
+package com.example.myocrapp.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BoxTrackerTest {
+
+    private static DetectionBox box(float left, float top) {
+        return new DetectionBox(left, top, left + 100, top + 80, "document", 0.9f);
+    }
+
+    //detector misses the page for a few runs (score below threshold): the box stays, with the same track
+    @Test
+    public void trackIsKeptAcrossAGap() {
+        BoxTracker tracker = new BoxTracker();
+        int id = tracker.update(Collections.singletonList(box(50, 50)), 0).get(0).trackId;
+        tracker.update(Collections.singletonList(box(50, 50)), 100);
+
+        for (long t = 200; t <= 800; t += 100) {
+            List<DetectionBox> boxes = tracker.update(Collections.emptyList(), t);
+            assertEquals("missed at " + t, 1, boxes.size());
+            assertEquals(id, boxes.get(0).trackId);
+            assertEquals(50f, boxes.get(0).left, 0.5f);
+        }
+
+        List<DetectionBox> found = tracker.update(Collections.singletonList(box(52, 51)), 850);
+        assertEquals(1, found.size());
+        assertEquals(id, found.get(0).trackId);
+    }
+
+    @Test
+    public void trackIsDroppedAfterTheGapGetsTooLong() {
+        BoxTracker tracker = new BoxTracker();
+        int id = tracker.update(Collections.singletonList(box(50, 50)), 0).get(0).trackId;
+
+        assertEquals(1, tracker.predict(800).size());
+        assertTrue(tracker.predict(801).isEmpty());
+        assertTrue(tracker.isEmpty());
+
+        //the same place later is a new object
+        List<DetectionBox> again = tracker.update(Collections.singletonList(box(50, 50)), 900);
+        assertEquals(1, again.size());
+        assertNotEquals(id, again.get(0).trackId);
+    }
+
+    @Test
+    public void predictionFollowsTheVelocityForALimitedTime() {
+        BoxTracker tracker = new BoxTracker();
+        for (long t = 0; t <= 400; t += 100) {
+            tracker.update(Collections.singletonList(box(100 + t / 5f, 50)), t); //0.2 px per ms to the right
+        }
+        assertEquals(1, tracker.predict(400).size());
+        float at400 = tracker.predict(400).get(0).left;
+        float at500 = tracker.predict(500).get(0).left;
+        assertTrue(at500 > at400);
+        //no extrapolation beyond 300 ms, a box flying off the page is worse than one standing still
+        assertEquals(tracker.predict(700).get(0).left, tracker.predict(1000).get(0).left, 0f);
+    }
+
+    @Test
+    public void separateObjectsGetSeparateTracks() {
+        BoxTracker tracker = new BoxTracker();
+        List<DetectionBox> first = tracker.update(Arrays.asList(box(0, 0), box(400, 300)), 0);
+        List<DetectionBox> second = tracker.update(Arrays.asList(box(402, 301), box(1, 2)), 100);
+        assertEquals(2, second.size());
+        assertEquals(first.get(0).trackId, second.get(0).trackId);
+        assertEquals(first.get(1).trackId, second.get(1).trackId);
+        assertNotEquals(first.get(0).trackId, first.get(1).trackId);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.myocrapp.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CropRegionTest {
+
+    private static final int MODEL_INPUT_SIZE = 300;
+
+    //the detector sees the capture stretched to 300x300, x and y scale back separately
+    @Test
+    public void modelBoxMapsBackToImagePixels() {
+        CropRegion crop = CropRegion.fromModelBox(75, 30, 150, 150, MODEL_INPUT_SIZE, 1200, 900, 0f, 0);
+        assertEquals(300, crop.left);
+        assertEquals(90, crop.top);
+        assertEquals(300, crop.width);
+        assertEquals(360, crop.height);
+        assertEquals(1f, crop.scale, 0f);
+        assertFalse(crop.isFullFrame(1200, 900));
+    }
+
+    @Test
+    public void modelBoxOfPortraitImage() {
+        CropRegion crop = CropRegion.fromModelBox(0, 150, 300, 300, MODEL_INPUT_SIZE, 600, 1200, 0f, 0);
+        assertEquals(0, crop.left);
+        assertEquals(600, crop.top);
+        assertEquals(600, crop.width);
+        assertEquals(600, crop.height);
+    }
+
+    @Test
+    public void marginIsAFractionOfTheBoxOnEverySide() {
+        CropRegion crop = CropRegion.fromImageBox(100, 100, 300, 200, 1000, 1000, 0.1f, 0);
+        assertEquals(80, crop.left);
+        assertEquals(90, crop.top);
+        assertEquals(240, crop.width);
+        assertEquals(120, crop.height);
+    }
+
+    //boxes reaching over the model input edge (and the margin around them) end at the image border
+    @Test
+    public void boxIsClampedToTheImage() {
+        CropRegion crop = CropRegion.fromModelBox(-15, 200, 320, 310, MODEL_INPUT_SIZE, 600, 600, 0.05f, 0);
+        assertEquals(0, crop.left);
+        assertEquals(389, crop.top);
+        assertEquals(600, crop.width);
+        assertEquals(211, crop.height);
+    }
+
+    @Test
+    public void tinyBoxFallsBackToTheFullFrame() {
+        CropRegion crop = CropRegion.fromModelBox(100, 100, 105, 150, MODEL_INPUT_SIZE, 600, 600, 0f, 0);
+        assertTrue(crop.isFullFrame(600, 600));
+    }
+
+    @Test
+    public void cropIsScaledDownToThePixelBudget() {
+        CropRegion crop = CropRegion.fromModelBox(0, 0, 300, 300, MODEL_INPUT_SIZE, 4000, 3000, 0f, 3_000_000);
+        assertTrue(crop.isFullFrame(4000, 3000));
+        assertEquals(0.5f, crop.scale, 1e-6f);
+        assertEquals(2000, crop.outputWidth());
+        assertEquals(1500, crop.outputHeight());
+    }
+
+    @Test
+    public void smallCropIsNotScaledUp() {
+        CropRegion crop = CropRegion.fromImageBox(0, 0, 100, 100, 1000, 1000, 0f, 3_000_000);
+        assertEquals(1f, crop.scale, 0f);
+        assertEquals(100, crop.outputWidth());
+    }
+}
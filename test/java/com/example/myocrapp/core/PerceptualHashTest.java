@@ -0,0 +1,122 @@
+package com.example.myocrapp.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PerceptualHashTest {
+
+    private static final int WIDTH = 288; //thumbnail size CaptureDecoder hashes
+    private static final int HEIGHT = 256;
+    private static final int MAX_DISTANCE = 6; //OCRHandler.MAX_HASH_DISTANCE
+
+    //text strokes over smoothly varying brightness (paragraphs of different density, pictures, shading),
+    //the layout depends on the seed. The hash only sees the smooth part
+    private static int[] page(int seed) {
+        Random layout = new Random(seed);
+        int[][] levels = new int[6][7];
+        for (int[] row : levels) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = 60 + layout.nextInt(170);
+            }
+        }
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            float gy = y * 5f / HEIGHT;
+            int y0 = (int) gy;
+            float fy = gy - y0;
+            for (int x = 0; x < WIDTH; x++) {
+                float gx = x * 6f / WIDTH;
+                int x0 = (int) gx;
+                float fx = gx - x0;
+                float top = levels[y0][x0] * (1 - fx) + levels[y0][x0 + 1] * fx;
+                float bottom = levels[y0 + 1][x0] * (1 - fx) + levels[y0 + 1][x0 + 1] * fx;
+                int level = Math.round(top * (1 - fy) + bottom * fy);
+                boolean ink = (y / 3) % 2 == 1 && (x / 2) % 2 == 0;
+                argb[y * WIDTH + x] = gray(ink ? level / 2 : level);
+            }
+        }
+        return argb;
+    }
+
+    //the same page photographed again: shifted a little, other exposure, sensor noise
+    private static int[] photographedAgain(int[] argb, int shiftX, int shiftY, int brightness, Random noise) {
+        int[] out = new int[argb.length];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int sx = Math.max(0, Math.min(WIDTH - 1, x - shiftX));
+                int sy = Math.max(0, Math.min(HEIGHT - 1, y - shiftY));
+                int v = (argb[sy * WIDTH + sx] & 0xFF) + brightness + noise.nextInt(25) - 12;
+                out[y * WIDTH + x] = gray(Math.max(0, Math.min(255, v)));
+            }
+        }
+        return out;
+    }
+
+    private static int gray(int v) {
+        return 0xFF000000 | v << 16 | v << 8 | v;
+    }
+
+    private static long hash(int[] argb) {
+        return PerceptualHash.dHash(argb, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void samePageIsWithinTheMatchDistance() {
+        Random noise = new Random(1);
+        int[] page = page(7);
+        long original = hash(page);
+        assertEquals(0, PerceptualHash.distance(original, hash(page)));
+        int distance = PerceptualHash.distance(original, hash(photographedAgain(page, 2, 1, 15, noise)));
+        assertTrue("same page at distance " + distance, distance <= MAX_DISTANCE);
+    }
+
+    @Test
+    public void differentPagesAreFurtherApart() {
+        for (int seed = 1; seed <= 5; seed++) {
+            int distance = PerceptualHash.distance(hash(page(0)), hash(page(seed)));
+            assertTrue("page " + seed + " at distance " + distance, distance > MAX_DISTANCE);
+        }
+    }
+
+    //each bit compares a cell with its right neighbour
+    @Test
+    public void bitsFollowTheHorizontalGradient() {
+        int[] darkening = new int[WIDTH * HEIGHT];
+        int[] brightening = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                darkening[y * WIDTH + x] = gray(255 - x * 255 / WIDTH);
+                brightening[y * WIDTH + x] = gray(x * 255 / WIDTH);
+            }
+        }
+        assertEquals(-1L, hash(darkening));
+        assertEquals(0L, hash(brightening));
+        assertEquals(64, PerceptualHash.distance(hash(darkening), hash(brightening)));
+    }
+
+    @Test
+    public void cacheFindsTheSamePageOnly() {
+        Random noise = new Random(2);
+        OcrResultCache<String> cache = new OcrResultCache<>(8, MAX_DISTANCE);
+        cache.put(hash(page(3)), "page 3");
+        cache.put(hash(page(4)), "page 4");
+        assertEquals("page 3", cache.find(hash(photographedAgain(page(3), -1, 2, -10, noise))));
+        assertNull(cache.find(hash(page(5))));
+    }
+
+    @Test
+    public void tooSmallImageIsRejected() {
+        try {
+            PerceptualHash.dHash(new int[8 * 8], 8, 8);
+            fail("8x8 has fewer cells than the 9x8 grid");
+        } catch (IllegalArgumentException expected) {
+            //ok
+        }
+    }
+}
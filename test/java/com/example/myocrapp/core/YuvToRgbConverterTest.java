@@ -0,0 +1,213 @@
+package com.example.myocrapp.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class YuvToRgbConverterTest {
+
+    //small, not square, so a swapped width/height shows up
+    private static final int WIDTH = 6;
+    private static final int HEIGHT = 4;
+    private static final int ROW_PADDING = 3; //extra bytes at the end of every row, like many camera HALs
+
+    private static int lumaAt(int x, int y) {
+        return 16 + 10 * x + 40 * y;
+    }
+
+    private static int uAt(int cx, int cy) {
+        return 100 + 20 * cx + 5 * cy;
+    }
+
+    private static int vAt(int cx, int cy) {
+        return 90 + 30 * cy + 7 * cx;
+    }
+
+    //expected pixels in source orientation, one chroma sample per 2x2 block
+    private static int[] expectedSource() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[y * WIDTH + x] = YuvToRgbConverter.yuvToArgb(lumaAt(x, y),
+                        uAt(x / 2, y / 2) - 128, vAt(x / 2, y / 2) - 128);
+            }
+        }
+        return pixels;
+    }
+
+    //the expected pixels rotated clockwise, same as the analysis image is shown
+    private static int[] rotate(int[] source, int rotationDegrees) {
+        boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+        int outWidth = swap ? HEIGHT : WIDTH;
+        int outHeight = swap ? WIDTH : HEIGHT;
+        int[] out = new int[outWidth * outHeight];
+        for (int oy = 0; oy < outHeight; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                int sx;
+                int sy;
+                switch (rotationDegrees) {
+                    case 90: sx = oy; sy = HEIGHT - 1 - ox; break;
+                    case 180: sx = WIDTH - 1 - ox; sy = HEIGHT - 1 - oy; break;
+                    case 270: sx = WIDTH - 1 - oy; sy = ox; break;
+                    default: sx = ox; sy = oy; break;
+                }
+                out[oy * outWidth + ox] = source[sy * WIDTH + sx];
+            }
+        }
+        return out;
+    }
+
+    private static ByteBuffer lumaPlane(int rowStride) {
+        byte[] bytes = new byte[rowStride * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                bytes[y * rowStride + x] = (byte) lumaAt(x, y);
+            }
+            for (int p = WIDTH; p < rowStride; p++) {
+                bytes[y * rowStride + p] = (byte) 0xEE; //padding must never be read
+            }
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    //I420: separate U and V planes, pixel stride 1
+    private static ByteBuffer[] planarChroma(int rowStride) {
+        byte[] u = new byte[rowStride * HEIGHT / 2];
+        byte[] v = new byte[rowStride * HEIGHT / 2];
+        for (int cy = 0; cy < HEIGHT / 2; cy++) {
+            for (int cx = 0; cx < WIDTH / 2; cx++) {
+                u[cy * rowStride + cx] = (byte) uAt(cx, cy);
+                v[cy * rowStride + cx] = (byte) vAt(cx, cy);
+            }
+        }
+        return new ByteBuffer[] {ByteBuffer.wrap(u), ByteBuffer.wrap(v)};
+    }
+
+    //NV21 (V first) or NV12 (U first): one interleaved plane, pixel stride 2, U and V views one byte apart
+    private static ByteBuffer[] interleavedChroma(int rowStride, boolean vFirst) {
+        byte[] bytes = new byte[rowStride * HEIGHT / 2];
+        for (int cy = 0; cy < HEIGHT / 2; cy++) {
+            for (int cx = 0; cx < WIDTH / 2; cx++) {
+                int at = cy * rowStride + 2 * cx;
+                bytes[at] = (byte) (vFirst ? vAt(cx, cy) : uAt(cx, cy));
+                bytes[at + 1] = (byte) (vFirst ? uAt(cx, cy) : vAt(cx, cy));
+            }
+        }
+        ByteBuffer first = ByteBuffer.wrap(bytes);
+        ByteBuffer second = ByteBuffer.wrap(bytes);
+        second.position(1);
+        return vFirst ? new ByteBuffer[] {second, first} : new ByteBuffer[] {first, second};
+    }
+
+    private static int[] convert(YuvToRgbConverter converter, ByteBuffer y, int yRowStride, ByteBuffer[] uv,
+                                 int uvRowStride, int uvPixelStride, int rotationDegrees) {
+        int[] argb = converter.convert(y, yRowStride, 1, uv[0], uv[1], uvRowStride, uvPixelStride,
+                WIDTH, HEIGHT, rotationDegrees, 1);
+        int size = converter.getOutputWidth() * converter.getOutputHeight();
+        int[] copy = new int[size];
+        System.arraycopy(argb, 0, copy, 0, size);
+        return copy;
+    }
+
+    @Test
+    public void planarWithRowPadding() {
+        int yRowStride = WIDTH + ROW_PADDING;
+        int uvRowStride = WIDTH / 2 + ROW_PADDING;
+        int[] argb = convert(new YuvToRgbConverter(), lumaPlane(yRowStride), yRowStride,
+                planarChroma(uvRowStride), uvRowStride, 1, 0);
+        assertArrayEquals(expectedSource(), argb);
+    }
+
+    @Test
+    public void interleavedNv21AndNv12MatchPlanar() {
+        int yRowStride = WIDTH + ROW_PADDING;
+        int uvRowStride = WIDTH + ROW_PADDING;
+        YuvToRgbConverter converter = new YuvToRgbConverter();
+        int[] nv21 = convert(converter, lumaPlane(yRowStride), yRowStride,
+                interleavedChroma(uvRowStride, true), uvRowStride, 2, 0);
+        assertArrayEquals("NV21", expectedSource(), nv21);
+        int[] nv12 = convert(converter, lumaPlane(yRowStride), yRowStride,
+                interleavedChroma(uvRowStride, false), uvRowStride, 2, 0);
+        assertArrayEquals("NV12", expectedSource(), nv12);
+    }
+
+    @Test
+    public void everyRotation() {
+        int yRowStride = WIDTH + ROW_PADDING;
+        int uvRowStride = WIDTH + ROW_PADDING;
+        YuvToRgbConverter converter = new YuvToRgbConverter(); //reused, the output buffer is shared between calls
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            int[] argb = convert(converter, lumaPlane(yRowStride), yRowStride,
+                    interleavedChroma(uvRowStride, true), uvRowStride, 2, rotation);
+            boolean swap = rotation == 90 || rotation == 270;
+            assertEquals(swap ? HEIGHT : WIDTH, converter.getOutputWidth());
+            assertEquals(swap ? WIDTH : HEIGHT, converter.getOutputHeight());
+            assertArrayEquals("rotation " + rotation, rotate(expectedSource(), rotation), argb);
+        }
+    }
+
+    @Test
+    public void bufferPositionsAreNotMoved() {
+        int yRowStride = WIDTH + ROW_PADDING;
+        int uvRowStride = WIDTH + ROW_PADDING;
+        ByteBuffer y = lumaPlane(yRowStride);
+        ByteBuffer[] uv = interleavedChroma(uvRowStride, true);
+        convert(new YuvToRgbConverter(), y, yRowStride, uv, uvRowStride, 2, 90);
+        assertEquals(0, y.position());
+        assertEquals(1, uv[0].position());
+        assertEquals(0, uv[1].position());
+    }
+
+    @Test
+    public void sampleStepKeepsEverySecondPixel() {
+        int yRowStride = WIDTH + ROW_PADDING;
+        int uvRowStride = WIDTH / 2 + ROW_PADDING;
+        YuvToRgbConverter converter = new YuvToRgbConverter();
+        int[] argb = converter.convert(lumaPlane(yRowStride), yRowStride, 1,
+                planarChroma(uvRowStride)[0], planarChroma(uvRowStride)[1], uvRowStride, 1, WIDTH, HEIGHT, 0, 2);
+        assertEquals(WIDTH / 2, converter.getOutputWidth());
+        assertEquals(HEIGHT / 2, converter.getOutputHeight());
+        int[] source = expectedSource();
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                assertEquals(source[2 * y * WIDTH + 2 * x], argb[y * (WIDTH / 2) + x]);
+            }
+        }
+    }
+
+    @Test
+    public void rgbaIsReorderedAndRotated() {
+        int rowStride = 4 * WIDTH + ROW_PADDING;
+        byte[] bytes = new byte[rowStride * HEIGHT];
+        int[] source = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = 10 * x;
+                int g = 40 * y;
+                int b = 200 - x - y;
+                int at = y * rowStride + 4 * x;
+                bytes[at] = (byte) r;
+                bytes[at + 1] = (byte) g;
+                bytes[at + 2] = (byte) b;
+                bytes[at + 3] = (byte) 0x7F; //alpha is ignored
+                source[y * WIDTH + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+        YuvToRgbConverter converter = new YuvToRgbConverter();
+        int[] argb = converter.convertRgba(ByteBuffer.wrap(bytes), rowStride, 4, WIDTH, HEIGHT, 270, 1);
+        int[] expected = rotate(source, 270);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], argb[i]);
+        }
+    }
+
+    @Test
+    public void sampleStepForKeepsTheModelInputSize() {
+        assertEquals(1, YuvToRgbConverter.sampleStepFor(640, 480, 300));
+        assertEquals(2, YuvToRgbConverter.sampleStepFor(1280, 720, 300));
+        assertEquals(1, YuvToRgbConverter.sampleStepFor(320, 240, 300));
+    }
+}